@@ -7,15 +7,68 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
 dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.0")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+// the scanner's SIMD fast path uses the incubating Vector API and falls back to scalar code without it
+val vectorModule = "--add-modules=jdk.incubator.vector"
+
+tasks.withType<JavaCompile> {
+    options.compilerArgs.add(vectorModule)
 }
 
 tasks.test {
     useJUnitPlatform()
+    jvmArgs(vectorModule)
+}
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks with the GC profiler, e.g. ./gradlew jmh --args='StageBenchmark'"
+    group = "verification"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+    jvmArgs(vectorModule)
+
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+    outputs.file(results)
+    outputs.upToDateWhen { false }
+    doFirst {
+        // appended to whatever --args selected, so every run reports allocation rates and leaves JSON behind
+        results.get().asFile.parentFile.mkdirs()
+        args("-prof", "gc", "-rf", "json", "-rff", results.get().asFile.absolutePath)
+    }
+}
+
+tasks.register<JavaExec>("benchmarkCorpus") {
+    description = "Runs the programs in benchmarks/ on every execution mode and compares them with " +
+            "benchmarks/baseline.tsv, e.g. ./gradlew benchmarkCorpus -Pthreshold=5 or -PupdateBaseline"
+    group = "verification"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "com.craftinginterpreters.lox.CorpusRunner"
+    jvmArgs(vectorModule)
+
+    val baseline = file("benchmarks/baseline.tsv")
+    if (providers.gradleProperty("updateBaseline").isPresent) {
+        args("--baseline", baseline, "--update-baseline")
+    } else if (baseline.exists()) {
+        args("--baseline", baseline, "--threshold", providers.gradleProperty("threshold").getOrElse("10"))
+    }
+    args(file("benchmarks"))
 }
 
 application {
     mainClass = "com.craftinginterpreters.lox.Lox"
-}
\ No newline at end of file
+    applicationDefaultJvmArgs = listOf(vectorModule)
+}
@@ -0,0 +1,99 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages per second through a {@link LoxChannel}, from one producer to one consumer. {@code handOff} measures
+ * the channel alone, {@code pipeline} a Lox script that sends numbers through two channels and a task in
+ * between.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelBenchmark {
+
+    private static final int MESSAGES = 100_000;
+    private static final int PIPELINE_MESSAGES = 10_000;
+
+    private static final String PIPELINE = """
+            var numbers = Channel(capacity);
+            var doubled = Channel(capacity);
+
+            fun produce() {
+              for (var i = 0; i < messages; i = i + 1) numbers.send(i);
+              numbers.close();
+            }
+
+            fun double() {
+              var n = numbers.receive();
+              while (n != nil) {
+                doubled.send(n * 2);
+                n = numbers.receive();
+              }
+              doubled.close();
+            }
+
+            spawn(produce);
+            spawn(double);
+            var result = 0;
+            var n = doubled.receive();
+            while (n != nil) {
+              result = result + n;
+              n = doubled.receive();
+            }
+            """;
+
+    @Param({"1", "64", "1024"})
+    public int capacity;
+
+    private PreparedScript pipeline;
+
+    @Setup
+    public void setup() {
+        pipeline = PreparedScript.prepare(PIPELINE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public double handOff() throws InterruptedException {
+        var channel = new LoxChannel(capacity);
+        var producer = new Thread(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                channel.send((double) i);
+            }
+            channel.close();
+        });
+        producer.start();
+
+        double sum = 0;
+        for (Object value = channel.receive(); value != null; value = channel.receive()) {
+            sum += (Double) value;
+        }
+        producer.join();
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_MESSAGES)
+    public Object pipeline() {
+        var interpreter = pipeline.execute(Map.of("capacity", (double) capacity, "messages", (double) PIPELINE_MESSAGES));
+        return interpreter.globals.get(new Token(TokenType.IDENTIFIER, "result", null, 1));
+    }
+}
@@ -0,0 +1,233 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Runs every program in the {@code benchmarks/} corpus on each execution mode and reports how long it took.
+ * <p>
+ * All programs run in one JVM: each is prepared once, executed a number of times to warm up, then measured
+ * over a fixed number of runs, every run in a fresh interpreter. The median and 99th percentile wall time
+ * are reported together with the allocation rate of the running thread. The output of the first run must
+ * be the same in every mode, so an engine that computes something different fails loudly instead of
+ * looking fast.
+ * <p>
+ * With {@code --baseline}, medians are compared with the ones stored in that file and the runner exits
+ * with a non-zero status when any of them is slower by more than {@code --threshold} percent. Passing
+ * {@code --update-baseline} writes the current medians to the file instead.
+ */
+public class CorpusRunner {
+
+    private static final Map<String, Supplier<Interpreter>> MODES = new LinkedHashMap<>();
+
+    static {
+        MODES.put("tree", Interpreter::new);
+        MODES.put("flat", FlatInterpreter::new);
+    }
+
+    private record Result(String program, String mode, double median, double p99, double allocationRate) {
+
+        String key() {
+            return program + "\t" + mode;
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final PrintStream out = System.out;
+
+    private int warmup = 5;
+    private int runs = 20;
+
+    public static void main(String[] args) throws IOException {
+        var runner = new CorpusRunner();
+        Path corpus = null;
+        Path baseline = null;
+        double threshold = 10;
+        boolean update = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("--warmup".equals(args[i]) && i + 1 < args.length) {
+                runner.warmup = Integer.parseInt(args[++i]);
+            } else if ("--runs".equals(args[i]) && i + 1 < args.length) {
+                runner.runs = Integer.parseInt(args[++i]);
+            } else if ("--baseline".equals(args[i]) && i + 1 < args.length) {
+                baseline = Paths.get(args[++i]);
+            } else if ("--threshold".equals(args[i]) && i + 1 < args.length) {
+                threshold = Double.parseDouble(args[++i]);
+            } else if ("--update-baseline".equals(args[i])) {
+                update = true;
+            } else if (corpus == null && !args[i].startsWith("--")) {
+                corpus = Paths.get(args[i]);
+            } else {
+                usage();
+            }
+        }
+        if (corpus == null || runner.runs < 1 || (update && baseline == null)) {
+            usage();
+        }
+
+        List<Result> results = runner.run(corpus);
+        if (results == null) {
+            System.exit(1);
+        }
+
+        if (baseline == null) {
+            return;
+        }
+        if (update) {
+            writeBaseline(baseline, results);
+            System.out.println("Baseline written to " + baseline.toAbsolutePath());
+        } else if (!compare(readBaseline(baseline), results, threshold)) {
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: CorpusRunner [--warmup <n>] [--runs <n>] "
+                + "[--baseline <file> [--threshold <percent>] [--update-baseline]] <directory>");
+        System.exit(64);
+    }
+
+    /**
+     * Measures every program on every mode, or returns {@code null} when a program does not run cleanly.
+     */
+    private List<Result> run(Path corpus) throws IOException {
+        List<Path> programs;
+        try (Stream<Path> files = Files.list(corpus)) {
+            programs = files.filter(p -> p.toString().endsWith(".lox")).sorted().toList();
+        }
+
+        List<Result> results = new ArrayList<>();
+        boolean failed = false;
+        out.printf("%-20s %-6s %12s %12s %14s%n", "program", "mode", "median ms", "p99 ms", "alloc MB/s");
+        for (Path program : programs) {
+            String name = program.getFileName().toString().replaceFirst("\\.lox$", "");
+            PreparedScript prepared = PreparedScript.prepare(Files.readString(program));
+            if (prepared == null) {
+                out.println(name + ": does not compile");
+                failed = true;
+                continue;
+            }
+
+            String expected = null;
+            for (var mode : MODES.entrySet()) {
+                String output = capture(prepared, mode.getValue());
+                if (output == null) {
+                    out.println(name + ": runtime error in " + mode.getKey() + " mode");
+                    failed = true;
+                    break;
+                }
+                if (expected == null) {
+                    expected = output;
+                } else if (!expected.equals(output)) {
+                    out.println(name + ": " + mode.getKey() + " mode printed something different");
+                    failed = true;
+                    break;
+                }
+
+                Result result = measure(name, mode.getKey(), prepared, mode.getValue());
+                results.add(result);
+                out.printf("%-20s %-6s %12.3f %12.3f %14.1f%n",
+                        name, result.mode, result.median, result.p99, result.allocationRate);
+            }
+        }
+        return failed ? null : results;
+    }
+
+    private String capture(PreparedScript prepared, Supplier<Interpreter> mode) {
+        var output = new ByteArrayOutputStream();
+        Lox.hadRuntimeError = false;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            prepared.execute(mode.get());
+        } finally {
+            System.setOut(out);
+        }
+        return Lox.hadRuntimeError ? null : output.toString(StandardCharsets.UTF_8);
+    }
+
+    private Result measure(String program, String mode, PreparedScript prepared, Supplier<Interpreter> interpreters) {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < warmup; i++) {
+                prepared.execute(interpreters.get());
+            }
+
+            long[] times = new long[runs];
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                prepared.execute(interpreters.get());
+                times[i] = System.nanoTime() - start;
+            }
+            allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+            Arrays.sort(times);
+            double total = Arrays.stream(times).sum() / 1e9;
+            return new Result(program, mode,
+                    times[(runs - 1) / 2] / 1e6,
+                    times[(int) Math.ceil(runs * 0.99) - 1] / 1e6,
+                    allocated / total / (1024 * 1024));
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static Map<String, Double> readBaseline(Path baseline) throws IOException {
+        Map<String, Double> medians = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(baseline)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            medians.put(fields[0] + "\t" + fields[1], Double.parseDouble(fields[2]));
+        }
+        return medians;
+    }
+
+    private static void writeBaseline(Path baseline, List<Result> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# program\tmode\tmedian ms");
+        for (Result result : results) {
+            lines.add(result.key() + "\t" + String.format(Locale.ROOT, "%.3f", result.median));
+        }
+        Files.write(baseline, lines);
+    }
+
+    private static boolean compare(Map<String, Double> baseline, List<Result> results, double threshold) {
+        boolean passed = true;
+        System.out.println();
+        System.out.printf("%-20s %-6s %12s %12s %9s%n", "program", "mode", "baseline ms", "median ms", "change");
+        for (Result result : results) {
+            Double before = baseline.get(result.key());
+            if (before == null) {
+                System.out.printf("%-20s %-6s %12s %12.3f %9s%n", result.program, result.mode, "-", result.median, "new");
+                continue;
+            }
+            double change = (result.median - before) / before * 100;
+            boolean slower = change > threshold;
+            System.out.printf("%-20s %-6s %12.3f %12.3f %+8.1f%%%s%n",
+                    result.program, result.mode, before, result.median, change, slower ? "  SLOWER" : "");
+            passed &= !slower;
+        }
+        if (!passed) {
+            System.out.printf("Some programs are more than %.1f%% slower than the baseline.%n", threshold);
+        }
+        return passed;
+    }
+}
@@ -0,0 +1,75 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walking the object tree with {@link Interpreter} versus walking the arena with {@link FlatInterpreter}.
+ * Run with {@code -prof gc} to compare allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlatAstBenchmark {
+
+    private static final String SCRIPT = """
+            fun fib(n) {
+              if (n < 2) return n;
+              return fib(n - 1) + fib(n - 2);
+            }
+
+            var sum = 0;
+            for (var i = 0; i < 100000; i = i + 1) {
+              sum = sum + (i * 2 - 1) / 3;
+            }
+            print fib(20) + sum;
+            """;
+
+    @Param({"tree", "flat"})
+    public String backend;
+
+    private PreparedScript prepared;
+    private PreparedScript generated;
+
+    @Setup
+    public void setup() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        prepared = PreparedScript.prepare(SCRIPT);
+        generated = PreparedScript.prepare(ParseCacheBenchmark.generate(10_000));
+    }
+
+    private Interpreter interpreter() {
+        return "flat".equals(backend) ? new FlatInterpreter() : new Interpreter();
+    }
+
+    @Benchmark
+    public Interpreter compute() {
+        var interpreter = interpreter();
+        prepared.execute(interpreter);
+        return interpreter;
+    }
+
+    @Benchmark
+    public Interpreter generatedProgram() {
+        // the flat backend pays for copying the tree into the arena on every run here
+        var interpreter = interpreter();
+        generated.execute(interpreter);
+        return interpreter;
+    }
+}
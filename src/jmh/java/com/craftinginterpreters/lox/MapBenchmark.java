@@ -0,0 +1,118 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A word count in Lox, once on the native {@link LoxMap} and once on a {@link java.util.HashMap} behind the same
+ * methods, so that the difference is the table and not the cost of calling into it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    private static final String SCRIPT = """
+            var syllables = List();
+            syllables.add("lo");
+            syllables.add("x");
+            syllables.add("tree");
+            syllables.add("walk");
+            syllables.add("er");
+            syllables.add("scan");
+            syllables.add("parse");
+            syllables.add("byte");
+
+            // a few hundred distinct words, each seen many times
+            var words = List();
+            var a = 0;
+            var b = 0;
+            var c = 0;
+            for (var i = 0; i < 20000; i = i + 1) {
+              words.add(syllables.get(a) + syllables.get(b) + syllables.get(c));
+              a = a + 1;
+              if (a == 8) { a = 0; b = b + 1; }
+              if (b == 8) { b = 0; c = c + 1; }
+              if (c == 5) c = 0;
+            }
+
+            var counts = Map();
+            for (var i = 0; i < words.length(); i = i + 1) {
+              var word = words.get(i);
+              var count = counts.get(word);
+              if (count == nil) count = 0;
+              counts.put(word, count + 1);
+            }
+
+            // number keys, as in an index from position to count
+            var byPosition = Map();
+            for (var i = 0; i < words.length(); i = i + 1) {
+              byPosition.put(i, counts.get(words.get(i)));
+            }
+            var result = counts.size() + byPosition.size();
+            """;
+
+    @Param({"open-addressing", "java.util.HashMap"})
+    public String table;
+
+    private PreparedScript prepared;
+
+    @Setup
+    public void setup() {
+        prepared = PreparedScript.prepare(SCRIPT);
+    }
+
+    @Benchmark
+    public Interpreter wordCount() {
+        var interpreter = new Interpreter();
+        if ("java.util.HashMap".equals(table)) {
+            interpreter.globals.define("Map", new NativeFunction("Map", 0, (i, arguments) -> new JavaMap()));
+        }
+        prepared.execute(interpreter);
+        return interpreter;
+    }
+
+    /**
+     * The subset of {@link LoxMap}'s methods the script uses, on top of a {@link HashMap}.
+     */
+    private static class JavaMap extends LoxInstance {
+
+        private final HashMap<Object, Object> map = new HashMap<>();
+
+        JavaMap() {
+            super(new LoxClass("Map", 0, java.util.Map.of()));
+        }
+
+        @Override
+        public Object get(Token name) {
+            switch (name.lexeme) {
+                case "get":
+                    return NativeFunction.method("Map", name, 1, arguments -> map.get(arguments.get(0)));
+                case "put":
+                    return NativeFunction.method("Map", name, 2, arguments -> {
+                        map.put(arguments.get(0), arguments.get(1));
+                        return null;
+                    });
+                case "size":
+                    return NativeFunction.method("Map", name, 0, arguments -> (double) map.size());
+                default:
+                    throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'");
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How {@code parallel_map} scales with the number of workers. The native is redefined on a pool of the given
+ * parallelism instead of the common pool, so that one machine can show 1, 2, 4 and 8 workers; more workers than
+ * cores only adds overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBenchmark {
+
+    private static final String SCRIPT = """
+            fun fib(n) {
+              if (n < 2) return n;
+              return fib(n - 1) + fib(n - 2);
+            }
+
+            fun score(record) {
+              return fib(record);
+            }
+
+            // records of uneven cost, from fib(12) to fib(16)
+            var records = List();
+            var size = 12;
+            for (var i = 0; i < 256; i = i + 1) {
+              records.add(size);
+              size = size + 1;
+              if (size == 17) size = 12;
+            }
+            var scores = parallel_map(records, score);
+            var result = 0;
+            for (var i = 0; i < scores.length(); i = i + 1) result = result + scores.get(i);
+            """;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private PreparedScript prepared;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        prepared = PreparedScript.prepare(SCRIPT);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Object parallelMap() {
+        var interpreter = new Interpreter();
+        interpreter.globals.define("parallel_map", new NativeFunction("parallel_map", 2,
+                (i, arguments) -> LoxParallel.map(i, pool, (LoxList) arguments.get(0), (LoxCallable) arguments.get(1))));
+        prepared.execute(interpreter);
+        return interpreter.globals.get(new Token(TokenType.IDENTIFIER, "result", null, 1));
+    }
+}
@@ -0,0 +1,82 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold versus cached start-up of a generated 50k-line script: running the scanner, parser and resolver
+ * compared to decoding the memory-mapped entry written by {@link ParseCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ParseCacheBenchmark {
+
+    private String source;
+    private Path directory;
+    private ParseCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        source = generate(5_000);
+        directory = Files.createTempDirectory("lox-cache");
+        cache = new ParseCache(directory);
+        // populate the entry
+        cache.prepare(source);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public PreparedScript cold() {
+        return PreparedScript.prepare(source);
+    }
+
+    @Benchmark
+    public PreparedScript cached() {
+        return cache.prepare(source);
+    }
+
+    /**
+     * Ten lines per function: declarations, control flow, strings and a comment.
+     */
+    static String generate(int functions) {
+        var builder = new StringBuilder();
+        for (int i = 0; i < functions; i++) {
+            builder.append("fun f").append(i).append("(a, b) {\n")
+                    .append("  var x = a * ").append(i).append(" + b;\n")
+                    .append("  if (x > ").append(i).append(") { x = x - 1; } else { x = x + 1; }\n")
+                    .append("  var s = \"str").append(i).append("\";\n")
+                    .append("  while (x > 100) { x = x / 2; }\n")
+                    .append("  return x;\n")
+                    .append("}\n")
+                    .append("var r").append(i).append(" = f").append(i).append("(").append(i).append(", 2);\n")
+                    .append("// comment line for ").append(i).append("\n")
+                    .append("\n");
+        }
+        return builder.toString();
+    }
+}
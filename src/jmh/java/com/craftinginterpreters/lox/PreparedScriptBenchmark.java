@@ -0,0 +1,85 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-run latency of re-running the whole front-end through {@link Lox#runScript} versus executing
+ * a {@link PreparedScript} that was scanned, parsed and resolved once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedScriptBenchmark {
+
+    private static final String SCRIPT = """
+            class Account {
+              init(balance) {
+                this.balance = balance;
+              }
+
+              deposit(amount) {
+                this.balance = this.balance + amount;
+                return this;
+              }
+            }
+
+            fun interest(balance, rate, years) {
+              var result = balance;
+              for (var i = 0; i < years; i = i + 1) {
+                result = result + result * rate;
+              }
+              return result;
+            }
+
+            var account = Account(input);
+            account.deposit(100).deposit(50);
+            var output = interest(account.balance, 0.05, 10);
+            """;
+
+    private PreparedScript prepared;
+
+    @Setup
+    public void setup() {
+        prepared = PreparedScript.prepare(SCRIPT);
+    }
+
+    @Benchmark
+    public void runScript() {
+        Lox.runScript("var input = 1000;\n" + SCRIPT);
+    }
+
+    @Benchmark
+    public Interpreter preparedFreshGlobals() {
+        return prepared.execute(Map.of("input", 1000.0));
+    }
+
+    @Benchmark
+    public void preparedSharedInterpreter(InterpreterState state) {
+        prepared.execute(state.interpreter);
+    }
+
+    @State(Scope.Thread)
+    public static class InterpreterState {
+        final Interpreter interpreter = new Interpreter();
+
+        @Setup
+        public void setup() {
+            interpreter.globals.define("input", 1000.0);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning comment- and string-heavy sources with the scalar {@link ScanAhead} versus the Vector API one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ScanAheadBenchmark {
+
+    @Param({"comments", "strings"})
+    public String input;
+
+    @Param({"scalar", "vector"})
+    public String mode;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        var builder = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            if ("comments".equals(input)) {
+                builder.append("/*************************************************************\n")
+                        .append(" * generated section ").append(i).append(", do not edit by hand\n")
+                        .append(" *************************************************************/\n")
+                        .append("// ----------------------------------------------------------\n");
+            } else {
+                builder.append("var s").append(i).append(" = \"")
+                        .append("a long generated string literal with some text in it, ".repeat(4))
+                        .append("\";\n");
+            }
+            builder.append("    var x").append(i).append(" = ").append(i).append(";\n");
+        }
+        source = builder.toString();
+    }
+
+    @Benchmark
+    public TokenBuffer scan() {
+        ScanAhead scan = "vector".equals(mode) ? ScanAhead.of(source) : new ScanAhead(source);
+        return new Scanner(source, scan).scanTokenBuffer();
+    }
+}
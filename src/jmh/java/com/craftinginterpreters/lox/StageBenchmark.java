@@ -0,0 +1,74 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each stage of the interpreter measured on its own, over the same set of {@link Workloads}.
+ * <p>
+ * Every benchmark is handed the output of the previous stage, prepared once in {@link #setup()}, so a change
+ * to one stage shows up only in its own numbers. The {@code jmh} task runs these with the GC profiler and
+ * writes the results to {@code build/reports/jmh/results.json}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+
+    @Param({"fib", "methods", "instances", "closures", "strings", "scopes"})
+    public String workload;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+    private PreparedScript prepared;
+
+    @Setup
+    public void setup() {
+        source = Workloads.load(workload);
+        tokens = new Scanner(source).scanTokens();
+        statements = new Parser(tokens).parse();
+        prepared = PreparedScript.prepare(source);
+    }
+
+    @Benchmark
+    public List<Token> scan() {
+        return new Scanner(source).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public Map<Expr, Integer> resolve() {
+        Map<Expr, Integer> locals = new HashMap<>();
+        new Resolver(locals).resolve(statements);
+        return locals;
+    }
+
+    @Benchmark
+    public Object interpret() {
+        var interpreter = new Interpreter();
+        prepared.execute(interpreter);
+        return interpreter.globals.get(new Token(TokenType.IDENTIFIER, "result", null, 0));
+    }
+}
@@ -0,0 +1,27 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Lox scripts under {@code src/jmh/resources/workloads}, each stressing one part of the interpreter.
+ * Every script leaves its answer in a global named {@code result} and prints nothing.
+ */
+final class Workloads {
+
+    private Workloads() {
+    }
+
+    static String load(String name) {
+        try (InputStream in = Workloads.class.getResourceAsStream("/workloads/" + name + ".lox")) {
+            if (in == null) {
+                throw new IllegalArgumentException("No workload named '" + name + "'.");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Layout of the binary encoding of a resolved syntax tree, shared by {@link AstWriter} and {@link AstReader}.
+ * <pre>
+ * file       -> MAGIC version strings numbers lines nodes
+ * strings    -> count ( length utf8-bytes )*
+ * numbers    -> count ( 8-byte IEEE 754 double )*
+ * lines      -> count ( zigzag delta to the previous token line )*
+ * nodes      -> count statement*
+ * </pre>
+ * Every integer apart from the number constants is an unsigned LEB128 varint. A node starts with one of the
+ * tags below and is followed by its fields in declaration order; tokens are written as their type ordinal
+ * and an index into the string pool, while their lines live in the line table in the order tokens appear.
+ * Variable, assignment and {@code this} nodes carry their resolved scope distance plus one, zero meaning global.
+ */
+final class AstFormat {
+
+    static final int MAGIC = 0x4C4F5843; // "LOXC"
+    static final int VERSION = 2;
+
+    static final int NULL = 0;
+
+    // expressions
+    static final int ASSIGN = 1;
+    static final int BINARY = 2;
+    static final int CALL = 3;
+    static final int GET = 4;
+    static final int GROUPING = 5;
+    static final int LITERAL_NIL = 6;
+    static final int LITERAL_TRUE = 7;
+    static final int LITERAL_FALSE = 8;
+    static final int LITERAL_NUMBER = 9;
+    static final int LITERAL_STRING = 10;
+    static final int LOGICAL = 11;
+    static final int SET = 12;
+    static final int THIS = 13;
+    static final int UNARY = 14;
+    static final int VARIABLE = 15;
+    static final int SERIES = 16;
+
+    // statements
+    static final int BLOCK = 32;
+    static final int CLASS = 33;
+    static final int EXPRESSION = 34;
+    static final int FUNCTION = 35;
+    static final int IF = 36;
+    static final int PRINT = 37;
+    static final int RETURN = 38;
+    static final int VAR = 39;
+    static final int WHILE = 40;
+    static final int IMPORT = 41;
+
+    private AstFormat() {
+    }
+}
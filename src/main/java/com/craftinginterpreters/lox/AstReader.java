@@ -0,0 +1,241 @@
+package com.craftinginterpreters.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.craftinginterpreters.lox.AstFormat.*;
+
+/**
+ * Decodes a syntax tree written by {@link AstWriter} back into {@link Stmt} and {@link Expr} nodes.
+ * The buffer is usually a memory-mapped cache file, so nothing is copied apart from the string pool.
+ */
+class AstReader {
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final ByteBuffer buffer;
+    private final Map<Expr, Integer> locals = new HashMap<>();
+
+    private String[] strings;
+    private double[] numbers;
+    private int[] lines;
+    private int nextLine = 0;
+
+    private AstReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads a whole script. Throws {@link IllegalArgumentException} when the buffer does not hold a tree
+     * in the current format, and {@link java.nio.BufferUnderflowException} when it is truncated.
+     */
+    static PreparedScript read(ByteBuffer buffer) {
+        return new AstReader(buffer).readScript();
+    }
+
+    private PreparedScript readScript() {
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a serialized syntax tree.");
+        }
+        int version = readVarint();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported syntax tree version " + version + ".");
+        }
+
+        strings = new String[readVarint()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarint()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        numbers = new double[readVarint()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = buffer.getDouble();
+        }
+
+        lines = new int[readVarint()];
+        int line = 0;
+        for (int i = 0; i < lines.length; i++) {
+            line += unzigzag(readVarint());
+            lines[i] = line;
+        }
+
+        return new PreparedScript(readStatements(), locals);
+    }
+
+    private List<Stmt> readStatements() {
+        int count = readVarint();
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(readStmt());
+        }
+        return statements;
+    }
+
+    private List<Expr> readExpressions() {
+        int count = readVarint();
+        List<Expr> expressions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expressions.add(readExpr());
+        }
+        return expressions;
+    }
+
+    private Token readToken() {
+        TokenType type = TOKEN_TYPES[readVarint()];
+        String lexeme = strings[readVarint()];
+        return new Token(type, lexeme, null, lines[nextLine++]);
+    }
+
+    private <E extends Expr> E readDepth(E expr) {
+        int depth = readVarint();
+        if (depth > 0) {
+            locals.put(expr, depth - 1);
+        }
+        return expr;
+    }
+
+    private Stmt.Function readFunction() {
+        Token name = readToken();
+        int arity = readVarint();
+        List<Token> params = new ArrayList<>(arity);
+        for (int i = 0; i < arity; i++) {
+            params.add(readToken());
+        }
+        return new Stmt.Function(name, params, readStatements());
+    }
+
+    private Expr readExpr() {
+        int tag = readVarint();
+        switch (tag) {
+            case NULL:
+                return null;
+            case ASSIGN: {
+                Token name = readToken();
+                Expr value = readExpr();
+                return readDepth(new Expr.Assign(name, value));
+            }
+            case BINARY: {
+                Expr left = readExpr();
+                Token operator = readToken();
+                return new Expr.Binary(left, operator, readExpr());
+            }
+            case CALL: {
+                Expr callee = readExpr();
+                Token paren = readToken();
+                return new Expr.Call(callee, paren, readExpressions());
+            }
+            case GET: {
+                Expr object = readExpr();
+                return new Expr.Get(object, readToken());
+            }
+            case GROUPING:
+                return new Expr.Grouping(readExpr());
+            case LITERAL_NIL:
+                return new Expr.Literal(null);
+            case LITERAL_TRUE:
+                return new Expr.Literal(true);
+            case LITERAL_FALSE:
+                return new Expr.Literal(false);
+            case LITERAL_NUMBER:
+                return new Expr.Literal(numbers[readVarint()]);
+            case LITERAL_STRING:
+                return new Expr.Literal(strings[readVarint()]);
+            case LOGICAL: {
+                Expr left = readExpr();
+                Token operator = readToken();
+                return new Expr.Logical(left, operator, readExpr());
+            }
+            case SET: {
+                Expr object = readExpr();
+                Token name = readToken();
+                return new Expr.Set(object, name, readExpr());
+            }
+            case THIS:
+                return readDepth(new Expr.This(readToken()));
+            case UNARY: {
+                Token operator = readToken();
+                return new Expr.Unary(operator, readExpr());
+            }
+            case VARIABLE:
+                return readDepth(new Expr.Variable(readToken()));
+            case SERIES:
+                return new Expr.Series(readExpressions());
+            default:
+                throw new IllegalArgumentException("Unknown expression tag " + tag + ".");
+        }
+    }
+
+    private Stmt readStmt() {
+        int tag = readVarint();
+        switch (tag) {
+            case NULL:
+                return null;
+            case BLOCK:
+                return new Stmt.Block(readStatements());
+            case CLASS: {
+                Token name = readToken();
+                int count = readVarint();
+                List<Stmt.Function> methods = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    methods.add(readFunction());
+                }
+                return new Stmt.Class(name, methods);
+            }
+            case EXPRESSION:
+                return new Stmt.Expression(readExpr());
+            case FUNCTION:
+                return readFunction();
+            case IF: {
+                Expr condition = readExpr();
+                Stmt thenBranch = readStmt();
+                return new Stmt.If(condition, thenBranch, readStmt());
+            }
+            case IMPORT: {
+                Token keyword = readToken();
+                Token path = readToken();
+                String literal = strings[readVarint()];
+                return new Stmt.Import(keyword, new Token(path.type, path.lexeme, literal, path.line));
+            }
+            case PRINT: {
+                Token keyword = readToken();
+                return new Stmt.Print(keyword, readExpr());
+            }
+            case RETURN: {
+                Token keyword = readToken();
+                return new Stmt.Return(keyword, readExpr());
+            }
+            case VAR: {
+                Token name = readToken();
+                return new Stmt.Var(name, readExpr());
+            }
+            case WHILE: {
+                Expr condition = readExpr();
+                return new Stmt.While(condition, readStmt());
+            }
+            default:
+                throw new IllegalArgumentException("Unknown statement tag " + tag + ".");
+        }
+    }
+
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
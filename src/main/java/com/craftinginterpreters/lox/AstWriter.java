@@ -0,0 +1,347 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.craftinginterpreters.lox.AstFormat.*;
+
+/**
+ * Encodes a {@link PreparedScript} in the compact binary format described in {@link AstFormat}.
+ */
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private final Map<Expr, Integer> locals;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<Double> numbers = new ArrayList<>();
+    private final Map<Long, Integer> numberIndex = new HashMap<>();
+    private final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+    private int lineCount = 0;
+    private int previousLine = 0;
+    private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+
+    private AstWriter(Map<Expr, Integer> locals) {
+        this.locals = locals;
+    }
+
+    static byte[] write(PreparedScript script) {
+        var writer = new AstWriter(script.locals);
+        writeVarint(writer.nodes, script.statements.size());
+        for (Stmt statement : script.statements) {
+            writer.write(statement);
+        }
+        return writer.toByteArray();
+    }
+
+    private byte[] toByteArray() {
+        var out = new ByteArrayOutputStream(nodes.size() + lines.size() + 64);
+        writeInt(out, MAGIC);
+        writeVarint(out, VERSION);
+
+        writeVarint(out, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.writeBytes(bytes);
+        }
+
+        writeVarint(out, numbers.size());
+        for (double number : numbers) {
+            long bits = Double.doubleToRawLongBits(number);
+            writeInt(out, (int) (bits >>> 32));
+            writeInt(out, (int) bits);
+        }
+
+        writeVarint(out, lineCount);
+        out.writeBytes(lines.toByteArray());
+
+        out.writeBytes(nodes.toByteArray());
+        return out.toByteArray();
+    }
+
+    private void write(Stmt stmt) {
+        if (stmt == null) {
+            tag(NULL);
+        } else {
+            stmt.accept(this);
+        }
+    }
+
+    private void write(Expr expr) {
+        if (expr == null) {
+            tag(NULL);
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    private void writeStatements(List<Stmt> statements) {
+        writeVarint(nodes, statements.size());
+        for (Stmt statement : statements) {
+            write(statement);
+        }
+    }
+
+    private void writeExpressions(List<Expr> expressions) {
+        writeVarint(nodes, expressions.size());
+        for (Expr expression : expressions) {
+            write(expression);
+        }
+    }
+
+    private void writeToken(Token token) {
+        writeVarint(nodes, token.type.ordinal());
+        writeVarint(nodes, string(token.lexeme));
+
+        writeVarint(lines, zigzag(token.line - previousLine));
+        previousLine = token.line;
+        lineCount++;
+    }
+
+    private void writeDepth(Expr expr) {
+        Integer depth = locals.get(expr);
+        writeVarint(nodes, depth == null ? 0 : depth + 1);
+    }
+
+    private void writeFunction(Stmt.Function function) {
+        writeToken(function.name);
+        writeVarint(nodes, function.params.size());
+        for (Token param : function.params) {
+            writeToken(param);
+        }
+        writeStatements(function.body);
+    }
+
+    private int string(String value) {
+        return stringIndex.computeIfAbsent(value, s -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    private int number(double value) {
+        return numberIndex.computeIfAbsent(Double.doubleToRawLongBits(value), bits -> {
+            numbers.add(value);
+            return numbers.size() - 1;
+        });
+    }
+
+    private void tag(int tag) {
+        writeVarint(nodes, tag);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        tag(ASSIGN);
+        writeToken(expr.name);
+        write(expr.value);
+        writeDepth(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        tag(BINARY);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        tag(CALL);
+        write(expr.callee);
+        writeToken(expr.paren);
+        writeExpressions(expr.arguments);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        tag(GET);
+        write(expr.object);
+        writeToken(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        tag(GROUPING);
+        write(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            tag(LITERAL_NIL);
+        } else if (expr.value instanceof Boolean b) {
+            tag(b ? LITERAL_TRUE : LITERAL_FALSE);
+        } else if (expr.value instanceof Double d) {
+            tag(LITERAL_NUMBER);
+            writeVarint(nodes, number(d));
+        } else if (expr.value instanceof String s) {
+            tag(LITERAL_STRING);
+            writeVarint(nodes, string(s));
+        } else {
+            throw new IllegalArgumentException("Cannot encode literal " + expr.value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        tag(LOGICAL);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        tag(SET);
+        write(expr.object);
+        writeToken(expr.name);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        tag(THIS);
+        writeToken(expr.keyword);
+        writeDepth(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        tag(UNARY);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        tag(VARIABLE);
+        writeToken(expr.name);
+        writeDepth(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitSeriesExpr(Expr.Series expr) {
+        tag(SERIES);
+        writeExpressions(expr.expressions);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        tag(BLOCK);
+        writeStatements(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        tag(CLASS);
+        writeToken(stmt.name);
+        writeVarint(nodes, stmt.methods.size());
+        for (Stmt.Function method : stmt.methods) {
+            writeFunction(method);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        tag(EXPRESSION);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        tag(FUNCTION);
+        writeFunction(stmt);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        tag(IF);
+        write(stmt.condition);
+        write(stmt.thenBranch);
+        write(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        tag(IMPORT);
+        writeToken(stmt.keyword);
+        writeToken(stmt.path);
+        writeVarint(nodes, string((String) stmt.path.literal));
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        tag(PRINT);
+        writeToken(stmt.keyword);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        tag(RETURN);
+        writeToken(stmt.keyword);
+        write(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        tag(VAR);
+        writeToken(stmt.name);
+        write(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        tag(WHILE);
+        write(stmt.condition);
+        write(stmt.body);
+        return null;
+    }
+}
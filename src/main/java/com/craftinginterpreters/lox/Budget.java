@@ -0,0 +1,224 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits on what one script may use: how many statements it executes, how long it runs and roughly how much it
+ * allocates. Set with {@code --max-statements}, {@code --timeout} and {@code --max-alloc}; a script over any of
+ * them stops with a runtime error at the line it had reached.
+ * <p>
+ * Interpreters only count down at loop back-edges and calls, the places a script can spend unbounded time
+ * through, and check the limits once every {@link #CHECK_INTERVAL} of them, so that a budget costs a decrement
+ * per iteration or call. Statements are taken from the interpreter's counters. Allocation is estimated from
+ * the environments and instances created, the length of the strings built by concatenation and the arrays lists
+ * and maps grow into, in total rather than live. A long string or a large array is checked as soon as it is
+ * charged, since doubling one outgrows any interval. The deadline runs from when the script starts executing,
+ * and natives that block, such as {@code await} and {@code receive}, wait no longer than it.
+ * Tasks and the pieces of parallel calls are charged to the budget of the script that started them, each counting
+ * down on its own, and the checks of tasks also stop them once that script has ended (see {@link LoxTask}).
+ */
+final class Budget {
+
+    static final int CHECK_INTERVAL = 1024;
+    private static final long ENVIRONMENT_BYTES = 64;
+    private static final long INSTANCE_BYTES = 64;
+    private static final long STRING_BYTES = 40;
+    private static final int LONG_STRING = 1 << 16;
+    private static final long LARGE_ARRAY = 1 << 16;
+
+    /**
+     * The limits, where zero stands for no limit, before they are applied to an interpreter.
+     */
+    record Limits(long statements, long millis, long bytes) {
+
+        Budget start(InterpreterStats stats) {
+            return new Budget(stats, this);
+        }
+    }
+
+    private final InterpreterStats stats;
+    private final Limits limits;
+    private final long deadline;
+    // what the interpreter had counted before, so that only this script's share is charged
+    private final long startStatements;
+    private final long startEnvironments;
+    private final long startInstances;
+    // strings built by concatenation and arrays grown by collections
+    private final LongAdder bytes;
+    // the tasks of the script, for the budget of a task, else null
+    private final LoxTask.Group tasks;
+    private int countdown = CHECK_INTERVAL;
+
+    private Budget(InterpreterStats stats, Limits limits) {
+        this.stats = stats;
+        this.limits = limits;
+        this.deadline = System.nanoTime() + limits.millis * 1_000_000;
+        this.startStatements = stats.statements.sum();
+        this.startEnvironments = stats.environments.sum();
+        this.startInstances = stats.instances.sum();
+        this.bytes = new LongAdder();
+        this.tasks = null;
+    }
+
+    private Budget(Budget script, LoxTask.Group tasks) {
+        this.stats = script.stats;
+        this.limits = script.limits;
+        this.deadline = script.deadline;
+        this.startStatements = script.startStatements;
+        this.startEnvironments = script.startEnvironments;
+        this.startInstances = script.startInstances;
+        this.bytes = script.bytes;
+        this.tasks = tasks;
+    }
+
+    /**
+     * The budget of a task spawned by the interpreter, which has no limits of its own when the script has none.
+     */
+    static Budget forTask(Interpreter parent, LoxTask.Group tasks) {
+        Budget script = parent.budget != null ? parent.budget : new Limits(0, 0, 0).start(parent.stats);
+        return new Budget(script, tasks);
+    }
+
+    /**
+     * A budget for a fork of the interpreter running beside it, such as a piece of {@code parallel_for}, which
+     * charges the same script and stops with the same tasks, but counts down to its checks on its own.
+     */
+    Budget fork() {
+        return new Budget(this, tasks);
+    }
+
+    /**
+     * Counts a back-edge or call, and tells whether the limits are due to be checked.
+     */
+    boolean due() {
+        if (--countdown > 0) {
+            return false;
+        }
+        countdown = CHECK_INTERVAL;
+        return true;
+    }
+
+    /**
+     * Raises an error once a limit is exceeded, at the given token, or at the call of the native checking when
+     * it is null.
+     */
+    void check(Token at) {
+        if (tasks != null && tasks.cancelled()) {
+            throw new RuntimeError(at, "Task stopped, the script that spawned it has ended.");
+        }
+        if (limits.statements > 0 && stats.statements.sum() - startStatements > limits.statements) {
+            throw new RuntimeError(at, "Script exceeded its budget of " + limits.statements + " statements.");
+        }
+        if (limits.millis > 0 && System.nanoTime() - deadline > 0) {
+            throw new RuntimeError(at, "Script exceeded its deadline of " + limits.millis + " ms.");
+        }
+        if (limits.bytes > 0 && allocated() > limits.bytes) {
+            throw new RuntimeError(at, "Script exceeded its allocation budget of " + limits.bytes + " bytes.");
+        }
+    }
+
+    /**
+     * Charges a string built by concatenation.
+     */
+    void string(String string, Token at) {
+        bytes.add(STRING_BYTES + string.length());
+        if (string.length() >= LONG_STRING) {
+            check(at);
+        }
+    }
+
+    /**
+     * Charges the array a list or map is about to grow into, before it is allocated, so that a script runs out
+     * of budget before the interpreter runs out of heap. Raised as an error of the native that grew it.
+     */
+    void collection(long arrayBytes) {
+        bytes.add(arrayBytes);
+        if (arrayBytes >= LARGE_ARRAY) {
+            check(null);
+        }
+    }
+
+    /**
+     * How long a native may block before the deadline passes, or {@link Long#MAX_VALUE} without a deadline.
+     * Natives wait at most this long at a time and check the budget, through {@link #check}, before waiting on.
+     */
+    long nanosLeft() {
+        return limits.millis > 0 ? Math.max(0, deadline - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+    long allocated() {
+        return (stats.environments.sum() - startEnvironments) * ENVIRONMENT_BYTES
+                + (stats.instances.sum() - startInstances) * INSTANCE_BYTES
+                + bytes.sum();
+    }
+
+    /**
+     * The line a loop is at, for loops checked at their back-edge, which have no token of their own. Looked for
+     * in the condition first and the body second, and only when a check is due. A loop without a single token,
+     * such as {@code while (true) {}}, is reported at line 0.
+     */
+    static Token token(Stmt.While loop) {
+        Token token = firstToken(loop);
+        return token != null ? token : new Token(TokenType.WHILE, "while", null, 0);
+    }
+
+    private static Token firstToken(Stmt.While loop) {
+        Token token = token(loop.condition);
+        return token != null ? token : token(loop.body);
+    }
+
+    private static Token token(Expr expr) {
+        if (expr instanceof Expr.Assign assign) {
+            return assign.name;
+        } else if (expr instanceof Expr.Binary binary) {
+            return binary.operator;
+        } else if (expr instanceof Expr.Call call) {
+            return call.paren;
+        } else if (expr instanceof Expr.Get get) {
+            return get.name;
+        } else if (expr instanceof Expr.Grouping grouping) {
+            return token(grouping.expression);
+        } else if (expr instanceof Expr.Logical logical) {
+            return logical.operator;
+        } else if (expr instanceof Expr.Set set) {
+            return set.name;
+        } else if (expr instanceof Expr.This self) {
+            return self.keyword;
+        } else if (expr instanceof Expr.Unary unary) {
+            return unary.operator;
+        } else if (expr instanceof Expr.Variable variable) {
+            return variable.name;
+        } else if (expr instanceof Expr.Series series && !series.expressions.isEmpty()) {
+            return token(series.expressions.get(0));
+        }
+        return null;
+    }
+
+    private static Token token(Stmt stmt) {
+        if (stmt instanceof Stmt.Block block) {
+            for (Stmt statement : block.statements) {
+                Token token = token(statement);
+                if (token != null) {
+                    return token;
+                }
+            }
+        } else if (stmt instanceof Stmt.Expression expression) {
+            return token(expression.expression);
+        } else if (stmt instanceof Stmt.Print print) {
+            return print.keyword;
+        } else if (stmt instanceof Stmt.Var var) {
+            return var.name;
+        } else if (stmt instanceof Stmt.If branch) {
+            return token(branch.condition);
+        } else if (stmt instanceof Stmt.While loop) {
+            return firstToken(loop);
+        } else if (stmt instanceof Stmt.Return ret) {
+            return ret.keyword;
+        } else if (stmt instanceof Stmt.Function function) {
+            return function.name;
+        } else if (stmt instanceof Stmt.Class klass) {
+            return klass.name;
+        }
+        return null;
+    }
+}
@@ -3,24 +3,93 @@ package com.craftinginterpreters.lox;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * The variables of one scope.
+ * <p>
+ * Closures passed to {@code spawn} let several threads use the same environment. Once the interpreter has spawned
+ * its first task every access locks the environment it touches, which keeps the map intact and makes each read
+ * see the latest write. Until then scripts pay only for reading a volatile flag, and scripts of other
+ * interpreters never start locking.
+ * <p>
+ * The globals count how often a function held by one of them was replaced, by a later declaration or an
+ * assignment, so that {@link MemoizedFunction}s can tell when a function they call may have changed.
+ */
 public class Environment {
+    // returned by load for a name this environment doesn't hold, as opposed to one holding nil
+    private static final Object ABSENT = new Object();
+
     private final Environment enclosing;
+    final InterpreterStats stats;
     private final Map<String, Object> values = new HashMap<>();
+    private volatile int functionsReplaced = 0;
 
-    Environment() {
-        enclosing = null;
+    Environment(InterpreterStats stats) {
+        this.enclosing = null;
+        this.stats = stats;
+        stats.environments.increment();
     }
 
     Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        this.stats = enclosing.stats;
+        stats.environments.increment();
     }
 
     void define(String name, Object value) {
-        values.put(name, value);
+        if (stats.spawned) {
+            synchronized (this) {
+                replaced(values.put(name, value));
+            }
+        } else {
+            replaced(values.put(name, value));
+        }
+    }
+
+    private void replaced(Object previous) {
+        if (enclosing == null && previous instanceof LoxCallable) {
+            functionsReplaced++;
+        }
+    }
+
+    /**
+     * How many times a global holding a function was given another value, for the globals.
+     */
+    int functionsReplaced() {
+        return functionsReplaced;
+    }
+
+    private Object load(String name) {
+        if (stats.spawned) {
+            synchronized (this) {
+                return values.getOrDefault(name, ABSENT);
+            }
+        }
+        return values.getOrDefault(name, ABSENT);
+    }
+
+    /**
+     * Stores the value if the name is declared here, telling whether it was.
+     */
+    private boolean store(String name, Object value) {
+        if (stats.spawned) {
+            synchronized (this) {
+                return replace(name, value);
+            }
+        }
+        return replace(name, value);
+    }
+
+    private boolean replace(String name, Object value) {
+        if (!values.containsKey(name)) {
+            return false;
+        }
+        replaced(values.put(name, value));
+        return true;
     }
 
     Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+        Object value = ancestor(distance).load(name);
+        return value == ABSENT ? null : value;
     }
 
     private Environment ancestor(int distance) {
@@ -33,8 +102,9 @@ public class Environment {
     }
 
     Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+        Object value = load(name.lexeme);
+        if (value != ABSENT) {
+            return value;
         }
 
         if (enclosing != null) {
@@ -45,8 +115,7 @@ public class Environment {
     }
 
     public void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+        if (store(name.lexeme, value)) {
             return;
         }
 
@@ -59,6 +128,10 @@ public class Environment {
     }
 
     public void assignAt(Integer distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+        assignAt(distance, name.lexeme, value);
+    }
+
+    void assignAt(int distance, String name, Object value) {
+        ancestor(distance).define(name, value);
     }
 }
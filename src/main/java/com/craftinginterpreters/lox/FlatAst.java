@@ -0,0 +1,372 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+final class FlatAst {
+    // the index of a missing node, e.g. an if statement without an else branch
+    static final int NULL = 0;
+    // a variable the resolver left to the globals
+    static final int GLOBAL = -1;
+
+    static final int KIND = 0;
+    static final int LINE = 1;
+
+    static final int ASSIGN_EXPR = 1;
+    static final int BINARY_EXPR = 2;
+    static final int CALL_EXPR = 3;
+    static final int GET_EXPR = 4;
+    static final int GROUPING_EXPR = 5;
+    static final int LITERAL_EXPR = 6;
+    static final int LOGICAL_EXPR = 7;
+    static final int SET_EXPR = 8;
+    static final int THIS_EXPR = 9;
+    static final int UNARY_EXPR = 10;
+    static final int VARIABLE_EXPR = 11;
+    static final int SERIES_EXPR = 12;
+    static final int BLOCK_STMT = 13;
+    static final int CLASS_STMT = 14;
+    static final int EXPRESSION_STMT = 15;
+    static final int FUNCTION_STMT = 16;
+    static final int IF_STMT = 17;
+    static final int IMPORT_STMT = 18;
+    static final int PRINT_STMT = 19;
+    static final int RETURN_STMT = 20;
+    static final int VAR_STMT = 21;
+    static final int WHILE_STMT = 22;
+
+    static final int ASSIGN_EXPR_NAME = 2;
+    static final int ASSIGN_EXPR_VALUE = 3;
+    static final int ASSIGN_EXPR_DEPTH = 4;
+
+    static final int BINARY_EXPR_LEFT = 2;
+    static final int BINARY_EXPR_OPERATOR = 3;
+    static final int BINARY_EXPR_RIGHT = 4;
+
+    static final int CALL_EXPR_CALLEE = 2;
+    static final int CALL_EXPR_PAREN = 3;
+    static final int CALL_EXPR_ARGUMENTS = 4;
+
+    static final int GET_EXPR_OBJECT = 2;
+    static final int GET_EXPR_NAME = 3;
+
+    static final int GROUPING_EXPR_EXPRESSION = 2;
+
+    static final int LITERAL_EXPR_VALUE = 2;
+
+    static final int LOGICAL_EXPR_LEFT = 2;
+    static final int LOGICAL_EXPR_OPERATOR = 3;
+    static final int LOGICAL_EXPR_RIGHT = 4;
+
+    static final int SET_EXPR_OBJECT = 2;
+    static final int SET_EXPR_NAME = 3;
+    static final int SET_EXPR_VALUE = 4;
+
+    static final int THIS_EXPR_KEYWORD = 2;
+    static final int THIS_EXPR_DEPTH = 3;
+
+    static final int UNARY_EXPR_OPERATOR = 2;
+    static final int UNARY_EXPR_RIGHT = 3;
+
+    static final int VARIABLE_EXPR_NAME = 2;
+    static final int VARIABLE_EXPR_DEPTH = 3;
+
+    static final int SERIES_EXPR_EXPRESSIONS = 2;
+
+    static final int BLOCK_STMT_STATEMENTS = 2;
+
+    static final int CLASS_STMT_NAME = 2;
+    static final int CLASS_STMT_METHODS = 3;
+
+    static final int EXPRESSION_STMT_EXPRESSION = 2;
+
+    static final int FUNCTION_STMT_NAME = 2;
+    static final int FUNCTION_STMT_PARAMS = 3;
+    static final int FUNCTION_STMT_BODY = 4;
+
+    static final int IF_STMT_CONDITION = 2;
+    static final int IF_STMT_THEN_BRANCH = 3;
+    static final int IF_STMT_ELSE_BRANCH = 4;
+
+    static final int IMPORT_STMT_KEYWORD = 2;
+    static final int IMPORT_STMT_PATH = 3;
+
+    static final int PRINT_STMT_KEYWORD = 2;
+    static final int PRINT_STMT_EXPRESSION = 3;
+
+    static final int RETURN_STMT_KEYWORD = 2;
+    static final int RETURN_STMT_VALUE = 3;
+
+    static final int VAR_STMT_NAME = 2;
+    static final int VAR_STMT_INITIALIZER = 3;
+
+    static final int WHILE_STMT_CONDITION = 2;
+    static final int WHILE_STMT_BODY = 3;
+
+    // the list of top-level statements
+    int statements = NULL;
+
+    int[] nodes = new int[1024];
+    String[] names = new String[64];
+    TokenType[] nameTypes = new TokenType[64];
+    Object[] constants = new Object[64];
+
+    private int size = 1;
+    private int nameCount = 0;
+    private int constantCount = 0;
+    private Map<String, Integer> nameIndex = new HashMap<>();
+    private Map<Object, Integer> constantIndex = new HashMap<>();
+
+    int assignExpr(int line, int name, int value, int depth) {
+        int node = allocate(5);
+        nodes[node + KIND] = ASSIGN_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + ASSIGN_EXPR_NAME] = name;
+        nodes[node + ASSIGN_EXPR_VALUE] = value;
+        nodes[node + ASSIGN_EXPR_DEPTH] = depth;
+        return node;
+    }
+
+    int binaryExpr(int line, int left, int operator, int right) {
+        int node = allocate(5);
+        nodes[node + KIND] = BINARY_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + BINARY_EXPR_LEFT] = left;
+        nodes[node + BINARY_EXPR_OPERATOR] = operator;
+        nodes[node + BINARY_EXPR_RIGHT] = right;
+        return node;
+    }
+
+    int callExpr(int line, int callee, int paren, int arguments) {
+        int node = allocate(5);
+        nodes[node + KIND] = CALL_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + CALL_EXPR_CALLEE] = callee;
+        nodes[node + CALL_EXPR_PAREN] = paren;
+        nodes[node + CALL_EXPR_ARGUMENTS] = arguments;
+        return node;
+    }
+
+    int getExpr(int line, int object, int name) {
+        int node = allocate(4);
+        nodes[node + KIND] = GET_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + GET_EXPR_OBJECT] = object;
+        nodes[node + GET_EXPR_NAME] = name;
+        return node;
+    }
+
+    int groupingExpr(int line, int expression) {
+        int node = allocate(3);
+        nodes[node + KIND] = GROUPING_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + GROUPING_EXPR_EXPRESSION] = expression;
+        return node;
+    }
+
+    int literalExpr(int line, int value) {
+        int node = allocate(3);
+        nodes[node + KIND] = LITERAL_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + LITERAL_EXPR_VALUE] = value;
+        return node;
+    }
+
+    int logicalExpr(int line, int left, int operator, int right) {
+        int node = allocate(5);
+        nodes[node + KIND] = LOGICAL_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + LOGICAL_EXPR_LEFT] = left;
+        nodes[node + LOGICAL_EXPR_OPERATOR] = operator;
+        nodes[node + LOGICAL_EXPR_RIGHT] = right;
+        return node;
+    }
+
+    int setExpr(int line, int object, int name, int value) {
+        int node = allocate(5);
+        nodes[node + KIND] = SET_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + SET_EXPR_OBJECT] = object;
+        nodes[node + SET_EXPR_NAME] = name;
+        nodes[node + SET_EXPR_VALUE] = value;
+        return node;
+    }
+
+    int thisExpr(int line, int keyword, int depth) {
+        int node = allocate(4);
+        nodes[node + KIND] = THIS_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + THIS_EXPR_KEYWORD] = keyword;
+        nodes[node + THIS_EXPR_DEPTH] = depth;
+        return node;
+    }
+
+    int unaryExpr(int line, int operator, int right) {
+        int node = allocate(4);
+        nodes[node + KIND] = UNARY_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + UNARY_EXPR_OPERATOR] = operator;
+        nodes[node + UNARY_EXPR_RIGHT] = right;
+        return node;
+    }
+
+    int variableExpr(int line, int name, int depth) {
+        int node = allocate(4);
+        nodes[node + KIND] = VARIABLE_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + VARIABLE_EXPR_NAME] = name;
+        nodes[node + VARIABLE_EXPR_DEPTH] = depth;
+        return node;
+    }
+
+    int seriesExpr(int line, int expressions) {
+        int node = allocate(3);
+        nodes[node + KIND] = SERIES_EXPR;
+        nodes[node + LINE] = line;
+        nodes[node + SERIES_EXPR_EXPRESSIONS] = expressions;
+        return node;
+    }
+
+    int blockStmt(int line, int statements) {
+        int node = allocate(3);
+        nodes[node + KIND] = BLOCK_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + BLOCK_STMT_STATEMENTS] = statements;
+        return node;
+    }
+
+    int classStmt(int line, int name, int methods) {
+        int node = allocate(4);
+        nodes[node + KIND] = CLASS_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + CLASS_STMT_NAME] = name;
+        nodes[node + CLASS_STMT_METHODS] = methods;
+        return node;
+    }
+
+    int expressionStmt(int line, int expression) {
+        int node = allocate(3);
+        nodes[node + KIND] = EXPRESSION_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + EXPRESSION_STMT_EXPRESSION] = expression;
+        return node;
+    }
+
+    int functionStmt(int line, int name, int params, int body) {
+        int node = allocate(5);
+        nodes[node + KIND] = FUNCTION_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + FUNCTION_STMT_NAME] = name;
+        nodes[node + FUNCTION_STMT_PARAMS] = params;
+        nodes[node + FUNCTION_STMT_BODY] = body;
+        return node;
+    }
+
+    int ifStmt(int line, int condition, int thenBranch, int elseBranch) {
+        int node = allocate(5);
+        nodes[node + KIND] = IF_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + IF_STMT_CONDITION] = condition;
+        nodes[node + IF_STMT_THEN_BRANCH] = thenBranch;
+        nodes[node + IF_STMT_ELSE_BRANCH] = elseBranch;
+        return node;
+    }
+
+    int importStmt(int line, int keyword, int path) {
+        int node = allocate(4);
+        nodes[node + KIND] = IMPORT_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + IMPORT_STMT_KEYWORD] = keyword;
+        nodes[node + IMPORT_STMT_PATH] = path;
+        return node;
+    }
+
+    int printStmt(int line, int keyword, int expression) {
+        int node = allocate(4);
+        nodes[node + KIND] = PRINT_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + PRINT_STMT_KEYWORD] = keyword;
+        nodes[node + PRINT_STMT_EXPRESSION] = expression;
+        return node;
+    }
+
+    int returnStmt(int line, int keyword, int value) {
+        int node = allocate(4);
+        nodes[node + KIND] = RETURN_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + RETURN_STMT_KEYWORD] = keyword;
+        nodes[node + RETURN_STMT_VALUE] = value;
+        return node;
+    }
+
+    int varStmt(int line, int name, int initializer) {
+        int node = allocate(4);
+        nodes[node + KIND] = VAR_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + VAR_STMT_NAME] = name;
+        nodes[node + VAR_STMT_INITIALIZER] = initializer;
+        return node;
+    }
+
+    int whileStmt(int line, int condition, int body) {
+        int node = allocate(4);
+        nodes[node + KIND] = WHILE_STMT;
+        nodes[node + LINE] = line;
+        nodes[node + WHILE_STMT_CONDITION] = condition;
+        nodes[node + WHILE_STMT_BODY] = body;
+        return node;
+    }
+
+    int list(int... elements) {
+        int list = allocate(elements.length + 1);
+        nodes[list] = elements.length;
+        System.arraycopy(elements, 0, nodes, list + 1, elements.length);
+        return list;
+    }
+
+    int name(Token token) {
+        return nameIndex.computeIfAbsent(token.type.name() + ' ' + token.lexeme, key -> {
+            if (nameCount == names.length) {
+                names = Arrays.copyOf(names, nameCount * 2);
+                nameTypes = Arrays.copyOf(nameTypes, nameCount * 2);
+            }
+            names[nameCount] = token.lexeme;
+            nameTypes[nameCount] = token.type;
+            return nameCount++;
+        });
+    }
+
+    int constant(Object value) {
+        return constantIndex.computeIfAbsent(value, key -> {
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, constantCount * 2);
+            }
+            constants[constantCount] = value;
+            return constantCount++;
+        });
+    }
+
+    // drops the spare capacity and the lookup tables once all nodes have been added
+    void trim() {
+        nodes = Arrays.copyOf(nodes, size);
+        names = Arrays.copyOf(names, nameCount);
+        nameTypes = Arrays.copyOf(nameTypes, nameCount);
+        constants = Arrays.copyOf(constants, constantCount);
+        nameIndex = null;
+        constantIndex = null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int allocate(int length) {
+        if (size + length > nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, size + length));
+        }
+        int node = size;
+        size += length;
+        return node;
+    }
+}
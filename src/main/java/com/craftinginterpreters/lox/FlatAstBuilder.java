@@ -0,0 +1,212 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * Copies a resolved syntax tree into a {@link FlatAst}. Children are written before their parents, so every
+ * node only refers to nodes at lower indices.
+ */
+class FlatAstBuilder implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+
+    private final FlatAst ast = new FlatAst();
+    private final PreparedScript script;
+    // nodes without a token of their own, such as blocks and literals, take the line of the last token seen
+    private int line = 0;
+
+    private FlatAstBuilder(PreparedScript script) {
+        this.script = script;
+    }
+
+    static FlatAst build(PreparedScript script) {
+        var builder = new FlatAstBuilder(script);
+        builder.ast.statements = builder.statements(script.statements);
+        builder.ast.trim();
+        return builder.ast;
+    }
+
+    private int statements(List<? extends Stmt> statements) {
+        int[] nodes = new int[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = node(statements.get(i));
+        }
+        return ast.list(nodes);
+    }
+
+    private int expressions(List<Expr> expressions) {
+        int[] nodes = new int[expressions.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = node(expressions.get(i));
+        }
+        return ast.list(nodes);
+    }
+
+    private int node(Expr expr) {
+        return expr == null ? FlatAst.NULL : expr.accept(this);
+    }
+
+    private int node(Stmt stmt) {
+        return stmt == null ? FlatAst.NULL : stmt.accept(this);
+    }
+
+    private int name(Token token) {
+        line = token.line;
+        return ast.name(token);
+    }
+
+    private int depth(Expr expr) {
+        Integer depth = script.locals.get(expr);
+        return depth == null ? FlatAst.GLOBAL : depth;
+    }
+
+    @Override
+    public Integer visitAssignExpr(Expr.Assign expr) {
+        int name = name(expr.name);
+        return ast.assignExpr(line, name, node(expr.value), depth(expr));
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.Binary expr) {
+        int left = node(expr.left);
+        int operator = name(expr.operator);
+        int operatorLine = line;
+        return ast.binaryExpr(operatorLine, left, operator, node(expr.right));
+    }
+
+    @Override
+    public Integer visitCallExpr(Expr.Call expr) {
+        int callee = node(expr.callee);
+        int arguments = expressions(expr.arguments);
+        int paren = name(expr.paren);
+        return ast.callExpr(line, callee, paren, arguments);
+    }
+
+    @Override
+    public Integer visitGetExpr(Expr.Get expr) {
+        int object = node(expr.object);
+        return ast.getExpr(expr.name.line, object, name(expr.name));
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.Grouping expr) {
+        int expression = node(expr.expression);
+        return ast.groupingExpr(line, expression);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.Literal expr) {
+        return ast.literalExpr(line, ast.constant(expr.value));
+    }
+
+    @Override
+    public Integer visitLogicalExpr(Expr.Logical expr) {
+        int left = node(expr.left);
+        int operator = name(expr.operator);
+        int operatorLine = line;
+        return ast.logicalExpr(operatorLine, left, operator, node(expr.right));
+    }
+
+    @Override
+    public Integer visitSetExpr(Expr.Set expr) {
+        int object = node(expr.object);
+        int name = name(expr.name);
+        int nameLine = line;
+        return ast.setExpr(nameLine, object, name, node(expr.value));
+    }
+
+    @Override
+    public Integer visitThisExpr(Expr.This expr) {
+        int keyword = name(expr.keyword);
+        return ast.thisExpr(line, keyword, depth(expr));
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.Unary expr) {
+        int operator = name(expr.operator);
+        int operatorLine = line;
+        return ast.unaryExpr(operatorLine, operator, node(expr.right));
+    }
+
+    @Override
+    public Integer visitVariableExpr(Expr.Variable expr) {
+        int name = name(expr.name);
+        return ast.variableExpr(line, name, depth(expr));
+    }
+
+    @Override
+    public Integer visitSeriesExpr(Expr.Series expr) {
+        int expressions = expressions(expr.expressions);
+        return ast.seriesExpr(line, expressions);
+    }
+
+    @Override
+    public Integer visitBlockStmt(Stmt.Block stmt) {
+        int statements = statements(stmt.statements);
+        return ast.blockStmt(line, statements);
+    }
+
+    @Override
+    public Integer visitClassStmt(Stmt.Class stmt) {
+        int name = name(stmt.name);
+        int nameLine = line;
+        return ast.classStmt(nameLine, name, statements(stmt.methods));
+    }
+
+    @Override
+    public Integer visitExpressionStmt(Stmt.Expression stmt) {
+        int expression = node(stmt.expression);
+        return ast.expressionStmt(line, expression);
+    }
+
+    @Override
+    public Integer visitFunctionStmt(Stmt.Function stmt) {
+        int name = name(stmt.name);
+        int nameLine = line;
+        int[] params = new int[stmt.params.size()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = name(stmt.params.get(i));
+        }
+        return ast.functionStmt(nameLine, name, ast.list(params), statements(stmt.body));
+    }
+
+    @Override
+    public Integer visitIfStmt(Stmt.If stmt) {
+        int condition = node(stmt.condition);
+        int conditionLine = line;
+        int thenBranch = node(stmt.thenBranch);
+        return ast.ifStmt(conditionLine, condition, thenBranch, node(stmt.elseBranch));
+    }
+
+    @Override
+    public Integer visitImportStmt(Stmt.Import stmt) {
+        int keyword = name(stmt.keyword);
+        return ast.importStmt(line, keyword, name(stmt.path));
+    }
+
+    @Override
+    public Integer visitPrintStmt(Stmt.Print stmt) {
+        int keyword = name(stmt.keyword);
+        int keywordLine = line;
+        return ast.printStmt(keywordLine, keyword, node(stmt.expression));
+    }
+
+    @Override
+    public Integer visitReturnStmt(Stmt.Return stmt) {
+        int keyword = name(stmt.keyword);
+        int keywordLine = line;
+        return ast.returnStmt(keywordLine, keyword, node(stmt.value));
+    }
+
+    @Override
+    public Integer visitVarStmt(Stmt.Var stmt) {
+        int name = name(stmt.name);
+        int nameLine = line;
+        return ast.varStmt(nameLine, name, node(stmt.initializer));
+    }
+
+    @Override
+    public Integer visitWhileStmt(Stmt.While stmt) {
+        int condition = node(stmt.condition);
+        int conditionLine = line;
+        return ast.whileStmt(conditionLine, condition, node(stmt.body));
+    }
+}
@@ -0,0 +1,73 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+import static com.craftinginterpreters.lox.FlatAst.*;
+
+/**
+ * A function declared in a script run by the {@link FlatInterpreter}, referring to its declaration by node.
+ */
+class FlatFunction implements LoxMethod {
+
+    final FlatAst ast;
+    final int declaration;
+    private final Environment closure;
+    private final boolean isInitializer;
+
+    FlatFunction(FlatAst ast, int declaration, Environment closure, boolean isInitializer) {
+        this.ast = ast;
+        this.declaration = declaration;
+        this.closure = closure;
+        this.isInitializer = isInitializer;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Environment environment = new Environment(closure);
+        int params = ast.nodes[declaration + FUNCTION_STMT_PARAMS];
+        for (int i = 0; i < arguments.size(); i++) {
+            environment.define(ast.names[ast.nodes[params + 1 + i]], arguments.get(i));
+        }
+        try {
+            ((FlatInterpreter) interpreter).executeBlock(ast, ast.nodes[declaration + FUNCTION_STMT_BODY], environment);
+        } catch (Return returnValue) {
+            if (isInitializer) {
+                return closure.getAt(0, "this");
+            }
+            return returnValue.value;
+        }
+
+        if (isInitializer) {
+            return closure.getAt(0, "this");
+        }
+        return null;
+    }
+
+    @Override
+    public int arity() {
+        return ast.nodes[ast.nodes[declaration + FUNCTION_STMT_PARAMS]];
+    }
+
+    @Override
+    public String name() {
+        return ast.names[ast.nodes[declaration + FUNCTION_STMT_NAME]];
+    }
+
+    @Override
+    public int line() {
+        return ast.nodes[declaration + LINE];
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + name() + ">";
+    }
+
+    @Override
+    public FlatFunction bind(LoxInstance instance) {
+        Environment environment = new Environment(closure);
+        environment.define("this", instance);
+        closure.stats.boundMethods.increment();
+        return new FlatFunction(ast, declaration, environment, isInitializer);
+    }
+}
@@ -0,0 +1,325 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static com.craftinginterpreters.lox.FlatAst.*;
+
+/**
+ * Runs scripts by walking their {@link FlatAst} instead of the object tree.
+ * <p>
+ * A script is copied into the arena the first time it is run, after which its {@link Stmt} and {@link Expr}
+ * nodes are no longer needed by this interpreter. Imported modules and statements typed into the prompt are
+ * still executed by the tree-walking {@link Interpreter} this class extends, sharing the same globals.
+ */
+class FlatInterpreter extends Interpreter {
+
+    // keyed weakly, so that a script's arena is dropped with the script
+    private final Map<PreparedScript, FlatAst> built;
+    private Environment environment = globals;
+
+    FlatInterpreter() {
+        built = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    private FlatInterpreter(FlatInterpreter parent) {
+        super(parent);
+        built = parent.built;
+    }
+
+    @Override
+    Interpreter fork() {
+        return new FlatInterpreter(this);
+    }
+
+    @Override
+    void interpret(PreparedScript script) {
+        long start = System.nanoTime();
+        if (limits != null) {
+            budget = limits.start(stats);
+        }
+        FlatAst ast = built.computeIfAbsent(script, FlatAstBuilder::build);
+        int statements = ast.nodes[ast.statements];
+        LoxTask.Group previousTasks = tasks;
+        tasks = new LoxTask.Group();
+        try {
+            for (int i = 0; i < statements; i++) {
+                int statement = ast.nodes[ast.statements + 1 + i];
+                if (ast.nodes[statement + KIND] == IMPORT_STMT) {
+                    // imports only appear at the top level, where the list lines up with the original statements
+                    modules.evaluate((Stmt.Import) script.statements.get(i), this);
+                } else {
+                    execute(ast, statement);
+                }
+            }
+        } catch (RuntimeError error) {
+            stats.runtimeErrors.increment();
+            Lox.runtimeError(error);
+        } finally {
+            tasks.cancel();
+            tasks = previousTasks;
+            flushStatements();
+        }
+        stats.scriptExecuted(script, System.nanoTime() - start);
+    }
+
+    void executeBlock(FlatAst ast, int statements, Environment environment) {
+        Environment previous = this.environment;
+        try {
+            this.environment = environment;
+            int count = ast.nodes[statements];
+            for (int i = 1; i <= count; i++) {
+                execute(ast, ast.nodes[statements + i]);
+            }
+        } finally {
+            this.environment = previous;
+        }
+    }
+
+    private void execute(FlatAst ast, int node) {
+        countStatement();
+        int[] nodes = ast.nodes;
+        switch (nodes[node + KIND]) {
+            case BLOCK_STMT:
+                executeBlock(ast, nodes[node + BLOCK_STMT_STATEMENTS], new Environment(environment));
+                break;
+            case CLASS_STMT:
+                executeClass(ast, node);
+                break;
+            case EXPRESSION_STMT:
+                evaluate(ast, nodes[node + EXPRESSION_STMT_EXPRESSION]);
+                break;
+            case FUNCTION_STMT:
+                environment.define(ast.names[nodes[node + FUNCTION_STMT_NAME]],
+                        new FlatFunction(ast, node, environment, false));
+                break;
+            case IF_STMT:
+                if (isTruthy(evaluate(ast, nodes[node + IF_STMT_CONDITION]))) {
+                    execute(ast, nodes[node + IF_STMT_THEN_BRANCH]);
+                } else if (nodes[node + IF_STMT_ELSE_BRANCH] != NULL) {
+                    execute(ast, nodes[node + IF_STMT_ELSE_BRANCH]);
+                }
+                break;
+            case PRINT_STMT:
+                out().println(stringify(evaluate(ast, nodes[node + PRINT_STMT_EXPRESSION])));
+                break;
+            case RETURN_STMT: {
+                Object value = null;
+                if (nodes[node + RETURN_STMT_VALUE] != NULL) {
+                    value = evaluate(ast, nodes[node + RETURN_STMT_VALUE]);
+                }
+                throw new Return(value);
+            }
+            case VAR_STMT: {
+                Object value = null;
+                if (nodes[node + VAR_STMT_INITIALIZER] != NULL) {
+                    value = evaluate(ast, nodes[node + VAR_STMT_INITIALIZER]);
+                }
+                environment.define(ast.names[nodes[node + VAR_STMT_NAME]], value);
+                break;
+            }
+            case WHILE_STMT:
+                while (isTruthy(evaluate(ast, nodes[node + WHILE_STMT_CONDITION]))) {
+                    execute(ast, nodes[node + WHILE_STMT_BODY]);
+                    if (budget != null && budget.due()) {
+                        checkBudget(new Token(TokenType.WHILE, "while", null, nodes[node + LINE]));
+                    }
+                }
+                break;
+            default:
+                // the resolver only allows imports at the top level
+                throw new IllegalStateException("Unexpected node kind " + nodes[node + KIND] + ".");
+        }
+    }
+
+    private void executeClass(FlatAst ast, int node) {
+        int[] nodes = ast.nodes;
+        String name = ast.names[nodes[node + CLASS_STMT_NAME]];
+        environment.define(name, null);
+
+        Map<String, FlatFunction> methods = new HashMap<>();
+        int list = nodes[node + CLASS_STMT_METHODS];
+        for (int i = 1; i <= nodes[list]; i++) {
+            int method = nodes[list + i];
+            String methodName = ast.names[nodes[method + FUNCTION_STMT_NAME]];
+            methods.put(methodName, new FlatFunction(ast, method, environment, "init".equals(methodName)));
+        }
+
+        environment.assign(token(ast, node, nodes[node + CLASS_STMT_NAME]), new LoxClass(name, nodes[node + LINE], methods));
+    }
+
+    private Object evaluate(FlatAst ast, int node) {
+        int[] nodes = ast.nodes;
+        switch (nodes[node + KIND]) {
+            case ASSIGN_EXPR: {
+                Object value = evaluate(ast, nodes[node + ASSIGN_EXPR_VALUE]);
+                int depth = nodes[node + ASSIGN_EXPR_DEPTH];
+                int name = nodes[node + ASSIGN_EXPR_NAME];
+                if (depth != GLOBAL) {
+                    environment.assignAt(depth, ast.names[name], value);
+                } else {
+                    globals.assign(token(ast, node, name), value);
+                }
+                return value;
+            }
+            case BINARY_EXPR:
+                return binary(ast, node);
+            case CALL_EXPR:
+                return call(ast, node);
+            case GET_EXPR: {
+                Object object = evaluate(ast, nodes[node + GET_EXPR_OBJECT]);
+                Token name = token(ast, node, nodes[node + GET_EXPR_NAME]);
+                if (object instanceof LoxInstance) {
+                    return ((LoxInstance) object).get(name);
+                }
+                throw new RuntimeError(name, "Only instances have properties.");
+            }
+            case GROUPING_EXPR:
+                return evaluate(ast, nodes[node + GROUPING_EXPR_EXPRESSION]);
+            case LITERAL_EXPR:
+                return ast.constants[nodes[node + LITERAL_EXPR_VALUE]];
+            case LOGICAL_EXPR: {
+                Object left = evaluate(ast, nodes[node + LOGICAL_EXPR_LEFT]);
+                if (ast.nameTypes[nodes[node + LOGICAL_EXPR_OPERATOR]] == TokenType.OR) {
+                    if (isTruthy(left)) {
+                        return left; // short-circuit evaluation
+                    }
+                } else {
+                    if (!isTruthy(left)) {
+                        return left; // short-circuit evaluation
+                    }
+                }
+                return evaluate(ast, nodes[node + LOGICAL_EXPR_RIGHT]);
+            }
+            case SET_EXPR: {
+                Object object = evaluate(ast, nodes[node + SET_EXPR_OBJECT]);
+                Token name = token(ast, node, nodes[node + SET_EXPR_NAME]);
+                if (!(object instanceof LoxInstance)) {
+                    throw new RuntimeError(name, "Only instances have fields.");
+                }
+                Object value = evaluate(ast, nodes[node + SET_EXPR_VALUE]);
+                ((LoxInstance) object).set(name, value);
+                return value;
+            }
+            case THIS_EXPR:
+                return lookup(ast, node, nodes[node + THIS_EXPR_KEYWORD], nodes[node + THIS_EXPR_DEPTH]);
+            case UNARY_EXPR: {
+                Object right = evaluate(ast, nodes[node + UNARY_EXPR_RIGHT]);
+                int operator = nodes[node + UNARY_EXPR_OPERATOR];
+                if (ast.nameTypes[operator] == TokenType.MINUS) {
+                    checkNumberOperand(token(ast, node, operator), right);
+                    return -(double) right;
+                }
+                return !isTruthy(right);
+            }
+            case VARIABLE_EXPR:
+                return lookup(ast, node, nodes[node + VARIABLE_EXPR_NAME], nodes[node + VARIABLE_EXPR_DEPTH]);
+            case SERIES_EXPR: {
+                int list = nodes[node + SERIES_EXPR_EXPRESSIONS];
+                Object first = evaluate(ast, nodes[list + 1]);
+                for (int i = 2; i <= nodes[list]; i++) {
+                    evaluate(ast, nodes[list + i]);
+                }
+                return first;
+            }
+            default:
+                throw new IllegalStateException("Unexpected node kind " + nodes[node + KIND] + ".");
+        }
+    }
+
+    private Object lookup(FlatAst ast, int node, int name, int depth) {
+        if (depth != GLOBAL) {
+            return environment.getAt(depth, ast.names[name]);
+        }
+        return globals.get(token(ast, node, name));
+    }
+
+    private Object binary(FlatAst ast, int node) {
+        int[] nodes = ast.nodes;
+        Object left = evaluate(ast, nodes[node + BINARY_EXPR_LEFT]);
+        Object right = evaluate(ast, nodes[node + BINARY_EXPR_RIGHT]);
+        int operator = nodes[node + BINARY_EXPR_OPERATOR];
+
+        switch (ast.nameTypes[operator]) {
+            case BANG_EQUAL:
+                return !isEqual(left, right);
+            case EQUAL_EQUAL:
+                return isEqual(left, right);
+            case PLUS:
+                if (left instanceof Double && right instanceof Double) {
+                    return (double) left + (double) right;
+                }
+                if (left instanceof String && right instanceof String) {
+                    String string = (String) left + (String) right;
+                    if (budget != null) {
+                        budget.string(string, token(ast, node, operator));
+                    }
+                    return string;
+                }
+                throw new RuntimeError(token(ast, node, operator), "Operands must be two numbers or two strings.");
+        }
+
+        checkNumberOperands(token(ast, node, operator), left, right);
+        double a = (double) left;
+        double b = (double) right;
+        switch (ast.nameTypes[operator]) {
+            case GREATER:
+                return a > b;
+            case GREATER_EQUAL:
+                return a >= b;
+            case LESS:
+                return a < b;
+            case LESS_EQUAL:
+                return a <= b;
+            case MINUS:
+                return a - b;
+            case SLASH:
+                return a / b;
+            case STAR:
+                return a * b;
+        }
+
+        return null;
+    }
+
+    private Object call(FlatAst ast, int node) {
+        int[] nodes = ast.nodes;
+        Object callee = evaluate(ast, nodes[node + CALL_EXPR_CALLEE]);
+
+        int list = nodes[node + CALL_EXPR_ARGUMENTS];
+        List<Object> arguments = new ArrayList<>(nodes[list]);
+        for (int i = 1; i <= nodes[list]; i++) {
+            arguments.add(evaluate(ast, nodes[list + i]));
+        }
+
+        if (!(callee instanceof LoxCallable function)) {
+            throw new RuntimeError(token(ast, node, nodes[node + CALL_EXPR_PAREN]), "Can only call functions and classes.");
+        }
+
+        if (arguments.size() != function.arity()) {
+            throw new RuntimeError(token(ast, node, nodes[node + CALL_EXPR_PAREN]),
+                    "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
+        }
+
+        if (budget != null && budget.due()) {
+            checkBudget(token(ast, node, nodes[node + CALL_EXPR_PAREN]));
+        }
+
+        try {
+            return call(function, arguments);
+        } catch (RuntimeError error) {
+            throw error.at(token(ast, node, nodes[node + CALL_EXPR_PAREN]));
+        }
+    }
+
+    /**
+     * Recreates a token of the node, which is only needed for error messages and global variables.
+     */
+    private static Token token(FlatAst ast, int node, int name) {
+        return new Token(ast.nameTypes[name], ast.names[name], null, ast.nodes[node + LINE]);
+    }
+}
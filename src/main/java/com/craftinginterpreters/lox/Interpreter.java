@@ -1,35 +1,204 @@
 package com.craftinginterpreters.lox;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
-    final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    // shared by all interpreters reading the process's standard input, so that none buffers lines away from another
+    private static final BufferedReader STANDARD_INPUT = new BufferedReader(new InputStreamReader(System.in));
+    private static final int STATEMENT_FLUSH_INTERVAL = 1024;
+
+    final InterpreterStats stats;
+    final Environment globals;
+    private Environment environment;
+    // the resolution results of the script whose code is running; functions carry their script's along, so that
+    // the results, and the tree they point into, are dropped with the script
+    Map<Expr, Integer> locals = new HashMap<>();
+    // scripts whose functions were analyzed for --memoize, held weakly for the same reason
+    private final Set<PreparedScript> loaded;
+    final ModuleLoader modules;
+    // set when running with --profile
+    Profiler profiler = null;
+    // set when running with --memoize, holds the functions whose results are cached
+    Set<Stmt.Function> memoized = null;
+    // where print writes to and read_line reads from, replaced for scripts run on behalf of a daemon client or
+    // in a batch; without a replacement print writes to whatever System.out is at the time
+    PrintStream out = null;
+    BufferedReader in = STANDARD_INPUT;
+    // set when scripts run with limits, applied to each one as it starts executing
+    Budget.Limits limits = null;
+    // the limits applied to the script running, checked at loop back-edges and calls
+    Budget budget = null;
+    // the tasks spawned by the script running, cut short when it ends
+    LoxTask.Group tasks = new LoxTask.Group();
+    // statements executed since they were last added to the shared counter, and the depth of calls on this
+    // interpreter's thread, both plain fields so that counting costs next to nothing
+    private int pendingStatements = 0;
+    int callDepth = 0;
 
     Interpreter() {
-        globals.define("clock", new LoxCallable() {
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return System.currentTimeMillis();
+        stats = new InterpreterStats(this);
+        globals = new Environment(stats);
+        environment = globals;
+        loaded = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+        modules = new ModuleLoader();
+
+        LoxEvents.registerPeriodicEvents();
+        globals.define("clock", new NativeFunction("clock", 0, (interpreter, arguments) -> (double) System.currentTimeMillis()));
+        // for scripts that measure themselves; all of them return numbers so that they can be subtracted
+        globals.define("clock_ns", new NativeFunction("clock_ns", 0, (interpreter, arguments) -> (double) System.nanoTime()));
+        globals.define("gc_count", new NativeFunction("gc_count", 0, (interpreter, arguments) -> collections(false)));
+        globals.define("gc_time", new NativeFunction("gc_time", 0, (interpreter, arguments) -> collections(true)));
+        globals.define("alloc_bytes", new NativeFunction("alloc_bytes", 0, (interpreter, arguments) -> allocatedBytes()));
+        globals.define("heap_used", new NativeFunction("heap_used", 0,
+                (interpreter, arguments) -> (double) ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed()));
+        globals.define("read_line", new NativeFunction("read_line", 0, (interpreter, arguments) -> {
+            try {
+                return interpreter.in.readLine();
+            } catch (IOException e) {
+                throw new RuntimeError("Could not read input: " + e.getMessage());
             }
-
-            @Override
-            public int arity() {
-                return 0;
+        }));
+        globals.define("spawn", new NativeFunction("spawn", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxCallable function) || function.arity() != 0) {
+                throw new RuntimeError("Can only spawn a function without parameters.");
             }
-
-            @Override
-            public String toString() {
-                return "<native fn>";
+            return LoxTask.spawn(interpreter, function);
+        }));
+        globals.define("await", new NativeFunction("await", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxTask task)) {
+                throw new RuntimeError("Can only await a task.");
+            }
+            return task.await(interpreter.budget);
+        }));
+        globals.define("Channel", new NativeFunction("Channel", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof Double capacity) || capacity != Math.floor(capacity)
+                    || capacity < 1 || capacity > Integer.MAX_VALUE) {
+                throw new RuntimeError("Channel capacity must be a positive whole number.");
+            }
+            interpreter.stats.instances.increment();
+            return new LoxChannel(capacity.intValue());
+        }));
+        globals.define("select", new NativeFunction("select", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxList list) || list.size() == 0) {
+                throw new RuntimeError("Can only select from a list of channels.");
+            }
+            var channels = new LoxChannel[list.size()];
+            for (int i = 0; i < channels.length; i++) {
+                if (!(list.get(i) instanceof LoxChannel channel)) {
+                    throw new RuntimeError("Can only select from a list of channels.");
+                }
+                channels[i] = channel;
+            }
+            return LoxChannel.select(channels, interpreter.budget);
+        }));
+        globals.define("parallel_for", new NativeFunction("parallel_for", 3, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof Double start) || start != Math.floor(start)
+                    || !(arguments.get(1) instanceof Double end) || end != Math.floor(end)
+                    || Math.abs(start) > Integer.MAX_VALUE || Math.abs(end) > Integer.MAX_VALUE) {
+                throw new RuntimeError("Range bounds must be whole numbers.");
+            }
+            if (!(arguments.get(2) instanceof LoxCallable function) || function.arity() != 1) {
+                throw new RuntimeError("Can only run a function of one argument in parallel.");
             }
+            LoxParallel.forEach(interpreter, ForkJoinPool.commonPool(), start.intValue(), end.intValue(), function);
+            return null;
+        }));
+        globals.define("parallel_map", new NativeFunction("parallel_map", 2, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxList list)) {
+                throw new RuntimeError("Can only map over a list.");
+            }
+            if (!(arguments.get(1) instanceof LoxCallable function) || function.arity() != 1) {
+                throw new RuntimeError("Can only run a function of one argument in parallel.");
+            }
+            interpreter.stats.instances.increment();
+            return LoxParallel.map(interpreter, ForkJoinPool.commonPool(), list, function);
+        }));
+        globals.define("List", new NativeFunction("List", 0, (interpreter, arguments) -> {
+            interpreter.stats.instances.increment();
+            return new LoxList();
+        }));
+        globals.define("Map", new NativeFunction("Map", 0, (interpreter, arguments) -> {
+            interpreter.stats.instances.increment();
+            return new LoxMap();
+        }));
+    }
+
+    /**
+     * An interpreter for a task spawned from the given one, sharing everything but the current environment.
+     * Tasks are not profiled, since the profiler follows a single call stack.
+     */
+    Interpreter(Interpreter parent) {
+        stats = parent.stats;
+        globals = parent.globals;
+        environment = globals;
+        locals = parent.locals;
+        loaded = parent.loaded;
+        modules = parent.modules;
+        memoized = parent.memoized;
+        out = parent.out;
+        in = parent.in;
+        // a budget of its own, since the countdown is a plain field the fork decrements on another thread
+        budget = parent.budget != null ? parent.budget.fork() : null;
+        tasks = parent.tasks;
+    }
+
+    /**
+     * Creates the interpreter a spawned task runs on.
+     */
+    Interpreter fork() {
+        return new Interpreter(this);
+    }
+
+    void interpret(PreparedScript script) {
+        long start = System.nanoTime();
+        if (limits != null) {
+            budget = limits.start(stats);
+        }
+        load(script);
+        Map<Expr, Integer> previous = locals;
+        LoxTask.Group previousTasks = tasks;
+        try {
+            locals = script.locals;
+            tasks = new LoxTask.Group();
+            interpret(script.statements);
+        } finally {
+            locals = previous;
+            tasks.cancel();
+            tasks = previousTasks;
+            flushStatements();
+        }
+        stats.scriptExecuted(script, System.nanoTime() - start);
+    }
+
+    void executeModule(PreparedScript script) {
+        load(script);
+        Map<Expr, Integer> previous = locals;
+        try {
+            locals = script.locals;
+            executeBlock(script.statements, globals);
+        } finally {
+            locals = previous;
+        }
+    }
 
-        });
+    private void load(PreparedScript script) {
+        if (memoized != null && loaded.add(script)) {
+            memoized.addAll(Purity.analyze(script.statements));
+        }
     }
 
     void interpret(List<Stmt> statements) {
@@ -38,6 +207,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 execute(statement);
             }
         } catch (RuntimeError error) {
+            stats.runtimeErrors.increment();
             Lox.runtimeError(error);
         }
     }
@@ -85,7 +255,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 }
 
                 if (left instanceof String && right instanceof String) {
-                    return (String)left + (String)right;
+                    String string = (String)left + (String)right;
+                    if (budget != null) {
+                        budget.string(string, expr.operator);
+                    }
+                    return string;
                 }
 
                 throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
@@ -117,7 +291,54 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
         }
 
-        return function.call(this, arguments);
+        if (budget != null && budget.due()) {
+            checkBudget(expr.paren);
+        }
+
+        try {
+            return call(function, arguments);
+        } catch (RuntimeError error) {
+            throw error.at(expr.paren);
+        }
+    }
+
+    /**
+     * Calls a function from Lox code, so that every call passes the profiler and Flight Recorder when they are on.
+     */
+    Object call(LoxCallable function, List<Object> arguments) {
+        if (function instanceof NativeFunction) {
+            stats.nativeCalls.increment();
+        } else if (function instanceof LoxClass) {
+            stats.constructorCalls.increment();
+        } else {
+            stats.functionCalls.increment();
+        }
+
+        callDepth++;
+        try {
+            return recordCall(function, arguments);
+        } finally {
+            callDepth--;
+        }
+    }
+
+    private Object recordCall(LoxCallable function, List<Object> arguments) {
+        if (!LoxEvents.functionCallsEnabled()) {
+            return profiler == null ? function.call(this, arguments) : profiler.call(this, function, arguments);
+        }
+
+        var event = new LoxEvents.FunctionCall();
+        event.begin();
+        try {
+            return profiler == null ? function.call(this, arguments) : profiler.call(this, function, arguments);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.function = function.name();
+                event.line = function.line();
+                event.commit();
+            }
+        }
     }
 
     @Override
@@ -132,7 +353,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitGroupingExpr(Expr.Grouping expr) {
-        return evaluate(expr);
+        return evaluate(expr.expression);
     }
 
     @Override
@@ -222,7 +443,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        environment.define(stmt.name.lexeme, new LoxFunction(stmt, environment));
+        LoxCallable function = new LoxFunction(stmt, environment, locals);
+        if (memoized != null && memoized.contains(stmt)) {
+            function = new MemoizedFunction(function, stats);
+        }
+        environment.define(stmt.name.lexeme, function);
         return null;
     }
 
@@ -236,13 +461,23 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        modules.evaluate(stmt, this);
+        return null;
+    }
+
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        out().println(stringify(value));
         return null;
     }
 
+    final PrintStream out() {
+        return out != null ? out : System.out;
+    }
+
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
         Object value = null;
@@ -267,6 +502,9 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     public Void visitWhileStmt(Stmt.While stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
             execute(stmt.body);
+            if (budget != null && budget.due()) {
+                checkBudget(Budget.token(stmt));
+            }
         }
 
         return null;
@@ -284,11 +522,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         Map<String, LoxFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods) {
-            LoxFunction function = new LoxFunction(method, environment, "init".equals(method.name.lexeme));
+            LoxFunction function = new LoxFunction(method, environment, locals, "init".equals(method.name.lexeme));
             methods.put(method.name.lexeme, function);
         }
 
-        LoxClass klass = new LoxClass(stmt.name.lexeme, methods);
+        LoxClass klass = new LoxClass(stmt.name.lexeme, stmt.name.line, methods);
         environment.assign(stmt.name, klass);
         return null;
     }
@@ -309,22 +547,39 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return expr.accept(this);
     }
 
-    private void execute(Stmt statement) {
+    void execute(Stmt statement) {
+        countStatement();
         statement.accept(this);
     }
 
-    void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    final void countStatement() {
+        if (++pendingStatements == STATEMENT_FLUSH_INTERVAL) {
+            flushStatements();
+        }
+    }
+
+    /**
+     * Adds the statements counted on this interpreter to its statistics, done every so many statements, when a
+     * script or task ends, and before limits are checked.
+     */
+    final void flushStatements() {
+        stats.statements.add(pendingStatements);
+        pendingStatements = 0;
+    }
+
+    final void checkBudget(Token at) {
+        flushStatements();
+        budget.check(at);
     }
 
-    private void checkNumberOperand(Token operator, Object operand) {
+    void checkNumberOperand(Token operator, Object operand) {
         if (operand instanceof Double) {
             return;
         }
         throw new RuntimeError(operator, "Operand must be a number");
     }
 
-    private void checkNumberOperands(Token token, Object left, Object right) {
+    void checkNumberOperands(Token token, Object left, Object right) {
         if (left instanceof Double && right instanceof Double) {
             return;
         }
@@ -332,7 +587,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(token, "Operands must be numbers");
     }
 
-    private boolean isTruthy(Object value) {
+    boolean isTruthy(Object value) {
         if (value == null) {
             return false;
         }
@@ -342,7 +597,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    boolean isEqual(Object a, Object b) {
         if (a == null && b == null) {
             return true;
         }
@@ -352,7 +607,30 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return a.equals(b);
     }
 
-    private String stringify(Object object) {
+    /**
+     * The number of garbage collections so far, or the milliseconds they took, summed over all collectors.
+     */
+    private static double collections(boolean time) {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // -1 when a collector doesn't keep the number
+            total += Math.max(0, time ? collector.getCollectionTime() : collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    /**
+     * Bytes allocated by the calling thread so far, or nil on a JVM that doesn't keep track.
+     */
+    private static Object allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            return (double) threads.getCurrentThreadAllocatedBytes();
+        }
+        return null;
+    }
+
+    static String stringify(Object object) {
         if (object == null) {
             return "nil";
         }
@@ -368,5 +646,20 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         return object.toString();
     }
+
+    /**
+     * Appends the value as {@code print} shows it. Lists and maps already being printed further out, in the given
+     * identity set, are shown as {@code [...]} and {@code {...}}, so that containers holding each other print in
+     * finite time.
+     */
+    static void stringify(Object object, StringBuilder text, Set<Object> printing) {
+        if (object instanceof LoxList list) {
+            list.print(text, printing);
+        } else if (object instanceof LoxMap map) {
+            map.print(text, printing);
+        } else {
+            text.append(stringify(object));
+        }
+    }
 }
 
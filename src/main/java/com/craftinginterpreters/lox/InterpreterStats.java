@@ -0,0 +1,202 @@
+package com.craftinginterpreters.lox;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime counters of one interpreter.
+ * <p>
+ * Counters are {@link LongAdder}s, so threads running Lox code and threads reading the counters over JMX do not
+ * contend on a single memory location. Environments find the counters through the environment they enclose,
+ * which ends at the interpreter's globals, so closures and bound methods are counted without a reference to
+ * the interpreter. Statements are counted by each interpreter on its own and added here every so often, and the
+ * call depth is read from the interpreter the counters belong to, not its tasks, so that neither costs the
+ * running script a shared write.
+ */
+class InterpreterStats implements InterpreterStatsMXBean {
+
+    private static final AtomicLong ids = new AtomicLong();
+    // the statistics of every interpreter still in use, sampled by the periodic Flight Recorder event
+    private static final Set<InterpreterStats> live = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    final long id = ids.incrementAndGet();
+
+    final LongAdder statements = new LongAdder();
+    final LongAdder functionCalls = new LongAdder();
+    final LongAdder nativeCalls = new LongAdder();
+    final LongAdder constructorCalls = new LongAdder();
+    final LongAdder runtimeErrors = new LongAdder();
+    final LongAdder environments = new LongAdder();
+    final LongAdder instances = new LongAdder();
+    final LongAdder boundMethods = new LongAdder();
+    final LongAdder memoHits = new LongAdder();
+    final LongAdder memoMisses = new LongAdder();
+
+    // set by the first task spawned from the interpreter, after which its environments and instances lock on
+    // every access; kept here since environments reach the statistics without a reference to the interpreter
+    volatile boolean spawned = false;
+
+    private final LongAdder scripts = new LongAdder();
+    private final LongAdder parseTime = new LongAdder();
+    private final LongAdder resolveTime = new LongAdder();
+    private final LongAdder executeTime = new LongAdder();
+    private volatile long lastParseTime = 0;
+    private volatile long lastResolveTime = 0;
+    private volatile long lastExecuteTime = 0;
+
+    private final Interpreter interpreter;
+    private ObjectName name = null;
+
+    InterpreterStats(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        live.add(this);
+    }
+
+    static List<InterpreterStats> live() {
+        synchronized (live) {
+            return new ArrayList<>(live);
+        }
+    }
+
+    void scriptExecuted(PreparedScript script, long executeNanos) {
+        scripts.increment();
+        parseTime.add(script.parseNanos);
+        resolveTime.add(script.resolveNanos);
+        executeTime.add(executeNanos);
+        lastParseTime = script.parseNanos;
+        lastResolveTime = script.resolveNanos;
+        lastExecuteTime = executeNanos;
+    }
+
+    /**
+     * Registers the counters with the platform MBean server under
+     * {@code com.craftinginterpreters.lox:type=Interpreter,id=<n>}.
+     */
+    synchronized ObjectName register() throws JMException {
+        if (name == null) {
+            var objectName = new ObjectName("com.craftinginterpreters.lox:type=Interpreter,id=" + id);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            name = objectName;
+        }
+        return name;
+    }
+
+    synchronized void unregister() throws JMException {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (InstanceNotFoundException e) {
+                // already unregistered by someone else
+            }
+            name = null;
+        }
+    }
+
+    @Override
+    public long getStatementsExecuted() {
+        return statements.sum();
+    }
+
+    @Override
+    public long getFunctionCalls() {
+        return functionCalls.sum();
+    }
+
+    @Override
+    public long getNativeCalls() {
+        return nativeCalls.sum();
+    }
+
+    @Override
+    public long getConstructorCalls() {
+        return constructorCalls.sum();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return runtimeErrors.sum();
+    }
+
+    @Override
+    public long getEnvironmentsCreated() {
+        return environments.sum();
+    }
+
+    @Override
+    public long getInstancesCreated() {
+        return instances.sum();
+    }
+
+    @Override
+    public long getBoundMethodsCreated() {
+        return boundMethods.sum();
+    }
+
+    @Override
+    public long getCallDepth() {
+        // written by the interpreter's thread alone, so this may lag behind it
+        return interpreter.callDepth;
+    }
+
+    @Override
+    public long getMemoHits() {
+        return memoHits.sum();
+    }
+
+    @Override
+    public long getMemoMisses() {
+        return memoMisses.sum();
+    }
+
+    @Override
+    public double getMemoHitRate() {
+        long hits = memoHits.sum();
+        long calls = hits + memoMisses.sum();
+        return calls == 0 ? 0 : (double) hits / calls;
+    }
+
+    @Override
+    public long getScriptsExecuted() {
+        return scripts.sum();
+    }
+
+    @Override
+    public long getParseTimeNanos() {
+        return parseTime.sum();
+    }
+
+    @Override
+    public long getResolveTimeNanos() {
+        return resolveTime.sum();
+    }
+
+    @Override
+    public long getExecuteTimeNanos() {
+        return executeTime.sum();
+    }
+
+    @Override
+    public long getLastParseTimeNanos() {
+        return lastParseTime;
+    }
+
+    @Override
+    public long getLastResolveTimeNanos() {
+        return lastResolveTime;
+    }
+
+    @Override
+    public long getLastExecuteTimeNanos() {
+        return lastExecuteTime;
+    }
+}
@@ -0,0 +1,48 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Live counters of one interpreter, registered with the platform MBean server by {@link InterpreterStats#register}.
+ */
+public interface InterpreterStatsMXBean {
+
+    long getStatementsExecuted();
+
+    long getFunctionCalls();
+
+    long getNativeCalls();
+
+    long getConstructorCalls();
+
+    long getRuntimeErrors();
+
+    long getEnvironmentsCreated();
+
+    long getInstancesCreated();
+
+    long getBoundMethodsCreated();
+
+    long getCallDepth();
+
+    long getMemoHits();
+
+    long getMemoMisses();
+
+    /**
+     * The share of cacheable calls to memoized functions answered from the cache, between 0 and 1.
+     */
+    double getMemoHitRate();
+
+    long getScriptsExecuted();
+
+    long getParseTimeNanos();
+
+    long getResolveTimeNanos();
+
+    long getExecuteTimeNanos();
+
+    long getLastParseTimeNanos();
+
+    long getLastResolveTimeNanos();
+
+    long getLastExecuteTimeNanos();
+}
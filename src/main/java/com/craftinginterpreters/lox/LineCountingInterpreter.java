@@ -0,0 +1,49 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * An interpreter that counts how often each line of the scripts it runs is executed.
+ * <p>
+ * Counting lives in this subclass rather than behind a flag in {@link Interpreter#execute}, so that running
+ * without a line profile leaves the statement loop exactly as it was.
+ */
+class LineCountingInterpreter extends Interpreter {
+
+    final LineProfile lines;
+
+    LineCountingInterpreter(LineProfile lines) {
+        this.lines = lines;
+    }
+
+    private LineCountingInterpreter(LineCountingInterpreter parent) {
+        super(parent);
+        lines = parent.lines;
+    }
+
+    @Override
+    Interpreter fork() {
+        return new LineCountingInterpreter(this);
+    }
+
+    @Override
+    void interpret(PreparedScript script) {
+        lines.lines(script);
+        super.interpret(script);
+    }
+
+    @Override
+    void execute(Stmt statement) {
+        int line = lines.hit(statement);
+        if (line == 0) {
+            super.execute(statement);
+            return;
+        }
+
+        int previous = lines.current;
+        lines.current = line;
+        try {
+            super.execute(statement);
+        } finally {
+            lines.current = previous;
+        }
+    }
+}
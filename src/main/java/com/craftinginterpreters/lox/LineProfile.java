@@ -0,0 +1,373 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How often each line of a script was executed, and optionally where a sampling thread found it running.
+ * <p>
+ * Statements do not all carry a token, so {@link #lines} assigns every statement the line of the first token
+ * inside it, or of the last token before it when it has none, such as {@code 1;}. Blocks are not counted
+ * themselves, only the statements in them. Counts are kept in a {@link LongAdder} per line, since spawned tasks
+ * count on their own threads.
+ */
+class LineProfile {
+
+    private static final int HOT_LINES = 10;
+
+    // statements of every profiled script, each pointing to the counter of its line
+    private final Map<Stmt, Line> lines = new ConcurrentHashMap<>();
+    private final Map<Integer, Line> counts = new ConcurrentHashMap<>();
+    private volatile int lastLine = 0;
+    private volatile AtomicLongArray samples = null;
+    private Thread sampler = null;
+
+    // the line of the statement being executed, read by the sampling thread; with tasks, the line one of them
+    // last started
+    volatile int current = 0;
+
+    private static final class Line {
+        final int number;
+        final LongAdder hits = new LongAdder();
+
+        Line(int number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * Starts a daemon thread that records the current line once per interval.
+     */
+    void startSampling(long intervalMicros) {
+        samples = new AtomicLongArray(256);
+        sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                int line = current;
+                var samples = this.samples;
+                if (line > 0 && line < samples.length()) {
+                    samples.incrementAndGet(line);
+                }
+                try {
+                    Thread.sleep(intervalMicros / 1000, (int) (intervalMicros % 1000) * 1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "lox-line-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    void stopSampling() {
+        if (sampler != null) {
+            sampler.interrupt();
+        }
+    }
+
+    void lines(PreparedScript script) {
+        Map<Stmt, Integer> found = new IdentityHashMap<>();
+        new StatementLines(found).statements(script.statements);
+        int last = lastLine;
+        for (Map.Entry<Stmt, Integer> statement : found.entrySet()) {
+            lines.put(statement.getKey(), counts.computeIfAbsent(statement.getValue(), Line::new));
+            last = Math.max(last, statement.getValue());
+        }
+        lastLine = last;
+        if (samples != null && last >= samples.length()) {
+            var grown = new AtomicLongArray(last + 1);
+            for (int i = 0; i < samples.length(); i++) {
+                grown.set(i, samples.get(i));
+            }
+            samples = grown;
+        }
+    }
+
+    /**
+     * Counts an execution of the statement and returns its line, or 0 for statements of scripts that are
+     * not profiled.
+     */
+    int hit(Stmt statement) {
+        Line line = lines.get(statement);
+        if (line == null) {
+            return 0;
+        }
+        line.hits.increment();
+        return line.number;
+    }
+
+    long count(int line) {
+        Line counted = counts.get(line);
+        return counted != null ? counted.hits.sum() : 0;
+    }
+
+    long samples(int line) {
+        return samples != null && line < samples.length() ? samples.get(line) : 0;
+    }
+
+    /**
+     * Prints the source with the hit count (and sample count) of every line in front of it, followed by the
+     * hottest lines.
+     */
+    void report(CharSequence source, PrintStream out) {
+        String[] text = source.toString().split("\n", -1);
+        for (int i = 0; i < text.length; i++) {
+            int line = i + 1;
+            String hits = count(line) > 0 ? Long.toString(count(line)) : "";
+            if (samples != null) {
+                out.printf("%10s %8s | %s%n", hits, samples(line) > 0 ? samples(line) : "", text[i]);
+            } else {
+                out.printf("%10s | %s%n", hits, text[i]);
+            }
+        }
+
+        List<Integer> hot = new ArrayList<>();
+        for (int line = 1; line <= lastLine; line++) {
+            if (count(line) > 0) {
+                hot.add(line);
+            }
+        }
+        Comparator<Integer> order = samples != null
+                ? Comparator.comparingLong(this::samples).thenComparingLong(this::count)
+                : Comparator.comparingLong(this::count);
+        hot.sort(order.reversed());
+
+        out.println();
+        out.println("Hottest lines:");
+        for (int line : hot.subList(0, Math.min(HOT_LINES, hot.size()))) {
+            String code = line <= text.length ? text[line - 1].strip() : "";
+            out.printf("%6d: %10d hits %8d samples  %s%n", line, count(line), samples(line), code);
+        }
+    }
+
+    /**
+     * Writes one tab-separated line per executed source line, in line order: the line number, its hit count and
+     * its sample count. Two runs of the same script can be compared with a plain diff.
+     */
+    void write(Path file) throws IOException {
+        try (var writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.println("line\tcount\tsamples");
+            for (int line = 1; line <= lastLine; line++) {
+                if (count(line) > 0) {
+                    writer.println(line + "\t" + count(line) + "\t" + samples(line));
+                }
+            }
+        }
+    }
+
+    /**
+     * Assigns lines to statements in source order, remembering the last token line seen.
+     */
+    private static class StatementLines implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+        private final Map<Stmt, Integer> lines;
+        private final List<Stmt> waiting = new ArrayList<>();
+        private int line = 1;
+
+        StatementLines(Map<Stmt, Integer> lines) {
+            this.lines = lines;
+        }
+
+        void statements(List<? extends Stmt> statements) {
+            for (Stmt statement : statements) {
+                statement(statement);
+            }
+        }
+
+        private void statement(Stmt statement) {
+            if (statement == null) {
+                return;
+            }
+            if (statement instanceof Stmt.Block) {
+                // only the statements inside a block are counted, including the ones a for loop is made of
+                statement.accept(this);
+                return;
+            }
+            waiting.add(statement);
+            statement.accept(this);
+            if (waiting.remove(statement)) {
+                // no token inside, e.g. a print of a literal
+                lines.put(statement, line);
+            }
+        }
+
+        private void token(Token token) {
+            line = token.line;
+            // the first token of a statement also starts every enclosing statement still without a line
+            for (Stmt statement : waiting) {
+                lines.put(statement, line);
+            }
+            waiting.clear();
+        }
+
+        private void expression(Expr expr) {
+            if (expr != null) {
+                expr.accept(this);
+            }
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            statements(stmt.statements);
+            return null;
+        }
+
+        @Override
+        public Void visitClassStmt(Stmt.Class stmt) {
+            token(stmt.name);
+            statements(stmt.methods);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            expression(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Stmt.Function stmt) {
+            token(stmt.name);
+            statements(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmt(Stmt.If stmt) {
+            expression(stmt.condition);
+            statement(stmt.thenBranch);
+            statement(stmt.elseBranch);
+            return null;
+        }
+
+        @Override
+        public Void visitImportStmt(Stmt.Import stmt) {
+            token(stmt.keyword);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            token(stmt.keyword);
+            expression(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Stmt.Return stmt) {
+            token(stmt.keyword);
+            expression(stmt.value);
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            token(stmt.name);
+            expression(stmt.initializer);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            expression(stmt.condition);
+            statement(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            token(expr.name);
+            expression(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            expression(expr.left);
+            token(expr.operator);
+            expression(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Expr.Call expr) {
+            expression(expr.callee);
+            for (Expr argument : expr.arguments) {
+                expression(argument);
+            }
+            token(expr.paren);
+            return null;
+        }
+
+        @Override
+        public Void visitGetExpr(Expr.Get expr) {
+            expression(expr.object);
+            token(expr.name);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            expression(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitLogicalExpr(Expr.Logical expr) {
+            expression(expr.left);
+            token(expr.operator);
+            expression(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitSetExpr(Expr.Set expr) {
+            expression(expr.object);
+            token(expr.name);
+            expression(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitThisExpr(Expr.This expr) {
+            token(expr.keyword);
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            token(expr.operator);
+            expression(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            token(expr.name);
+            return null;
+        }
+
+        @Override
+        public Void visitSeriesExpr(Expr.Series expr) {
+            for (Expr e : expr.expressions) {
+                expression(e);
+            }
+            return null;
+        }
+    }
+}
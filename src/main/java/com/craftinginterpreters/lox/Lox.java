@@ -1,37 +1,205 @@
 package com.craftinginterpreters.lox;
 
-import java.io.BufferedReader;
+import javax.management.JMException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
+import java.io.PrintStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class Lox {
 
     private static final String PROMPT = ">";
 
-    private static final Interpreter interpreter = new Interpreter();
+    private static Interpreter interpreter = new Interpreter();
 
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
+    static volatile boolean hadError = false;
+    static volatile boolean hadRuntimeError = false;
+
+    // errors reported by the current thread, so that front-ends running in parallel can tell theirs apart
+    private static final ThreadLocal<int[]> errorCount = ThreadLocal.withInitial(() -> new int[1]);
+    // where the current thread reports errors, so that scripts run for different daemon clients keep theirs apart
+    private static final ThreadLocal<PrintStream> errors = ThreadLocal.withInitial(() -> System.err);
+
+    private static ParseCache parseCache = null;
+    // where --profile and --lines write to, next to the script unless given; nothing is written for the prompt
+    private static Path profileOutput = null;
+    private static Path linesOutput = null;
+    private static final long SAMPLE_INTERVAL_MICROS = 1000;
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
+        List<Path> scripts = new ArrayList<>();
+        Path socket = null;
+        Path outputDirectory = null;
+        int jobs = 0;
+        long maxStatements = 0;
+        long timeout = 0;
+        long maxAllocation = 0;
+        boolean profile = false;
+        boolean flat = false;
+        boolean memoize = false;
+        LineProfile lines = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--cache-dir".equals(args[i]) && i + 1 < args.length) {
+                parseCache = new ParseCache(Paths.get(args[++i]));
+            } else if ("--daemon".equals(args[i]) && i + 1 < args.length) {
+                socket = Paths.get(args[++i]);
+            } else if ("--jobs".equals(args[i]) && i + 1 < args.length) {
+                jobs = jobs(args[++i]);
+            } else if ("--output-dir".equals(args[i]) && i + 1 < args.length) {
+                outputDirectory = Paths.get(args[++i]);
+            } else if ("--max-statements".equals(args[i]) && i + 1 < args.length) {
+                maxStatements = limit(args[++i]);
+            } else if ("--timeout".equals(args[i]) && i + 1 < args.length) {
+                timeout = limit(args[++i]);
+            } else if ("--max-alloc".equals(args[i]) && i + 1 < args.length) {
+                maxAllocation = limit(args[++i]);
+            } else if ("--flat-ast".equals(args[i])) {
+                flat = true;
+            } else if ("--lines".equals(args[i]) || "--line-samples".equals(args[i])) {
+                lines = lines != null ? lines : new LineProfile();
+                if ("--line-samples".equals(args[i])) {
+                    lines.startSampling(SAMPLE_INTERVAL_MICROS);
+                }
+            } else if ("--memoize".equals(args[i])) {
+                memoize = true;
+            } else if ("--profile".equals(args[i])) {
+                profile = true;
+            } else if ("--profile-output".equals(args[i]) && i + 1 < args.length) {
+                profileOutput = Paths.get(args[++i]);
+            } else if ("--lines-output".equals(args[i]) && i + 1 < args.length) {
+                linesOutput = Paths.get(args[++i]);
+            } else if (!args[i].startsWith("-")) {
+                scripts.add(Paths.get(args[i]));
+            } else {
+                usage();
+            }
+        }
+        if (flat && (lines != null || memoize)) {
+            // line counts and memoization hook into the tree-walking interpreter
+            usage();
+        }
+        boolean batch = scripts.size() > 1 || jobs > 0 || outputDirectory != null
+                || scripts.size() == 1 && Files.isDirectory(scripts.get(0));
+        if (socket != null && (batch || !scripts.isEmpty())) {
+            usage();
+        }
+        Budget.Limits limits = null;
+        if (maxStatements > 0 || timeout > 0 || maxAllocation > 0) {
+            // a prompt has no end the limits could be measured to
+            if (socket == null && scripts.isEmpty()) {
+                usage();
+            }
+            limits = new Budget.Limits(maxStatements, timeout, maxAllocation);
+        }
+        if ((socket != null || batch) && (lines != null || profile)) {
+            // every script gets a fresh interpreter, while profiles would mix them all up
+            usage();
+        }
+        if (profileOutput != null && !profile || linesOutput != null && lines == null) {
+            usage();
+        }
+        if (!batch && scripts.size() == 1) {
+            profileOutput = profileOutput != null ? profileOutput : besideScript(scripts.get(0), ".profile.collapsed");
+            linesOutput = linesOutput != null ? linesOutput : besideScript(scripts.get(0), ".lines.tsv");
+        }
+        if (socket != null) {
+            try {
+                new LoxDaemon(interpreterFactory(flat, memoize, limits)).serve(socket);
+            } catch (IOException e) {
+                System.err.println("Could not listen on " + socket + ": " + e.getMessage());
+                System.exit(74);
+            }
+            return;
+        }
+        if (batch) {
+            var scriptBatch = new LoxBatch(interpreterFactory(flat, memoize, limits),
+                    jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors(), outputDirectory);
+            System.exit(scriptBatch.run(scripts));
+        }
+        if (flat) {
+            interpreter = new FlatInterpreter();
+        } else if (lines != null) {
+            interpreter = new LineCountingInterpreter(lines);
         }
+        interpreter.modules.setParseCache(parseCache);
+        if (memoize) {
+            interpreter.memoized = ConcurrentHashMap.newKeySet();
+        }
+        if (profile) {
+            interpreter.profiler = new Profiler();
+        }
+        interpreter.limits = limits;
+        register(interpreter);
 
-        if (args.length == 1) {
-            Lox.runFile(args[0]);
+        if (!scripts.isEmpty()) {
+            Lox.runFile(scripts.get(0).toString());
         } else {
             Lox.runPrompt();
+            writeProfile(null);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: jlox [--cache-dir <directory>] [--flat-ast | --lines | --line-samples | --memoize] [--profile] [outputs] [limits] [script]");
+        System.out.println("       jlox [--cache-dir <directory>] [--flat-ast | --memoize] [limits] [--jobs <n>] [--output-dir <directory>] <script or directory>...");
+        System.out.println("       jlox [--cache-dir <directory>] [--flat-ast | --memoize] [limits] --daemon <socket>");
+        System.out.println("Outputs: [--profile-output <file>] [--lines-output <file>], next to the script by default");
+        System.out.println("Limits: [--max-statements <n>] [--timeout <milliseconds>] [--max-alloc <bytes>], for every script");
+        System.exit(64);
+    }
+
+    private static long limit(String value) {
+        try {
+            long limit = Long.parseLong(value);
+            if (limit > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
         }
+        usage();
+        return 0;
+    }
+
+    private static int jobs(String count) {
+        try {
+            int jobs = Integer.parseInt(count);
+            if (jobs > 0) {
+                return jobs;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        usage();
+        return 0;
+    }
+
+    /**
+     * Creates the fresh interpreters scripts run in when they must not see each other's globals. Each gets its
+     * own budget, which starts counting when its script starts executing.
+     */
+    static Supplier<Interpreter> interpreterFactory(boolean flat, boolean memoize, Budget.Limits limits) {
+        return () -> {
+            Interpreter interpreter = flat ? new FlatInterpreter() : new Interpreter();
+            interpreter.modules.setParseCache(parseCache);
+            if (memoize) {
+                interpreter.memoized = ConcurrentHashMap.newKeySet();
+            }
+            interpreter.limits = limits;
+            return interpreter;
+        };
     }
 
     static void runFile(String fileName) throws IOException {
-        runScript(Files.readString(Paths.get(fileName), Charset.defaultCharset()));
+        Path path = Paths.get(fileName);
+        CharSequence source = MappedSource.open(path);
+        runScript(source, path.toAbsolutePath().getParent(), path);
+        writeProfile(source);
         if (hadError) {
             System.exit(65);
         }
@@ -40,8 +208,33 @@ public class Lox {
         }
     }
 
+    private static void writeProfile(CharSequence source) throws IOException {
+        if (interpreter.profiler != null) {
+            interpreter.profiler.report(System.err);
+            if (profileOutput != null) {
+                interpreter.profiler.writeCollapsedStacks(profileOutput);
+                System.err.println("Collapsed stacks written to " + profileOutput.toAbsolutePath());
+            }
+        }
+        if (interpreter instanceof LineCountingInterpreter counting) {
+            counting.lines.stopSampling();
+            if (source != null) {
+                counting.lines.report(source, System.err);
+            }
+            if (linesOutput != null) {
+                counting.lines.write(linesOutput);
+                System.err.println("Line counts written to " + linesOutput.toAbsolutePath());
+            }
+        }
+    }
+
+    private static Path besideScript(Path script, String suffix) {
+        return script.resolveSibling(script.getFileName().toString().replaceFirst("\\.lox$", "") + suffix);
+    }
+
     static void runPrompt() throws IOException {
-        var reader = new BufferedReader(new InputStreamReader(System.in));
+        // the interpreter's reader, which read_line shares
+        var reader = interpreter.in;
         while (true) {
             System.out.print(PROMPT);
             String line = reader.readLine();
@@ -63,34 +256,110 @@ public class Lox {
         }
     }
 
-    static List<Stmt> parse(String script) {
-        var scanner = new Scanner(script);
-        var tokens = scanner.scanTokens();
-        var parser = new Parser(tokens);
+    static List<Stmt> parse(CharSequence script) {
+        // tokens are pulled from the scanner as the parser needs them, never held as a whole
+        var parser = new Parser(new Scanner(script).tokenStream());
         return parser.parse();
     }
 
     static void runScript(String script) {
+        runScript(script, Paths.get(""));
+    }
+
+    /**
+     * Runs a script whose imports are resolved relative to the given directory.
+     */
+    static void runScript(CharSequence script, Path directory) {
+        runScript(script, directory, null);
+    }
+
+    /**
+     * Runs a script read from the given file, or from no file when it is null.
+     */
+    static void runScript(CharSequence script, Path directory, Path file) {
         // reset errors
         hadError = false;
         hadRuntimeError = false;
 
-        var statements = parse(script);
+        var prepared = parseCache != null ? parseCache.prepare(script) : PreparedScript.prepare(script);
+        if (prepared == null) {
+            return;
+        }
 
-        if (hadError) {
-            // stop if there was a syntax error
+        if (!interpreter.modules.preload(prepared, directory, file)) {
+            // stop if an imported module could not be loaded
             return;
         }
 
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
+        prepared.execute(interpreter);
+    }
 
-        if (hadError) {
-            // stop if there's a resolution error
-            return;
+    /**
+     * Runs a script file in the given interpreter, which prints to its own stream, while errors go to the
+     * given one. Unlike {@link #runFile}, nothing is shared with other scripts running at the same time, and
+     * the exit code {@code runFile} would have used is returned instead of exiting. The interpreter's statistics
+     * are registered with JMX, under a name of their own, for as long as the script runs.
+     */
+    static int runIsolated(Interpreter interpreter, Path path, PrintStream err) {
+        register(interpreter);
+        try {
+            return reportingTo(err, () -> {
+                CharSequence source;
+                try {
+                    source = MappedSource.open(path);
+                } catch (IOException e) {
+                    err.println("Could not read script " + path + ": " + e.getMessage());
+                    return 66;
+                }
+
+                var prepared = parseCache != null ? parseCache.prepare(source) : PreparedScript.prepare(source);
+                if (prepared == null || !interpreter.modules.preload(prepared, path.toAbsolutePath().getParent(), path)) {
+                    return 65;
+                }
+
+                long runtimeErrors = interpreter.stats.getRuntimeErrors();
+                try {
+                    prepared.execute(interpreter);
+                } catch (StackOverflowError e) {
+                    err.println("Stack overflow.");
+                    return 70;
+                } finally {
+                    interpreter.out().flush();
+                }
+                return interpreter.stats.getRuntimeErrors() != runtimeErrors ? 70 : 0;
+            });
+        } finally {
+            try {
+                interpreter.stats.unregister();
+            } catch (JMException e) {
+                System.err.println("Could not unregister interpreter statistics: " + e.getMessage());
+            }
         }
+    }
 
-        interpreter.interpret(statements);
+    private static void register(Interpreter interpreter) {
+        try {
+            interpreter.stats.register();
+        } catch (JMException e) {
+            System.err.println("Could not register interpreter statistics: " + e.getMessage());
+        }
+    }
+
+    static PrintStream errors() {
+        return errors.get();
+    }
+
+    /**
+     * Runs the action with errors of the current thread reported to the given stream.
+     */
+    static <T> T reportingTo(PrintStream stream, Supplier<T> action) {
+        PrintStream previous = errors.get();
+        errors.set(stream);
+        try {
+            return action.get();
+        } finally {
+            errors.set(previous);
+        }
     }
 
     static void error(int line, String message) {
@@ -98,8 +367,13 @@ public class Lox {
     }
 
     static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
+        errors.get().println("[line " + line + "] Error" + where + ": " + message);
         hadError = true;
+        errorCount.get()[0]++;
+    }
+
+    static int errorCount() {
+        return errorCount.get()[0];
     }
 
     static void error(Token token, String message) {
@@ -111,7 +385,8 @@ public class Lox {
     }
 
     static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        errors.get().println(error.getMessage() + "\n[line " + error.token.line + "]");
         hadRuntimeError = true;
+        LoxEvents.runtimeError(error);
     }
 }
@@ -0,0 +1,181 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Runs many scripts in one JVM, started with {@code jlox [--jobs <n>] [--output-dir <directory>] <scripts or
+ * directories...>}. Directories stand for all {@code .lox} files below them.
+ * <p>
+ * Scripts run concurrently on a fixed number of threads, each in a fresh interpreter with its own output and
+ * errors and no input. With an output directory, each script's output and errors go to files named after it.
+ * Otherwise they are printed once the script is done, every line prefixed with the script's name, in the order
+ * the scripts were given. A summary of every script's status, exit code and wall time follows on standard
+ * error, and the batch exits with the highest exit code of its scripts.
+ */
+final class LoxBatch {
+
+    // output files are named after the script's file, or its path below a given directory with _ for separators
+    private record Script(Path path, String name, String outputName) {
+
+        Script(Path path, String name, Path relative) {
+            this(path, name, relative.toString().replace(relative.getFileSystem().getSeparator(), "_")
+                    .replaceFirst("\\.lox$", ""));
+        }
+    }
+
+    private record Result(Script script, int status, long nanos, byte[] out, byte[] err) {
+    }
+
+    private final Supplier<Interpreter> interpreters;
+    private final int jobs;
+    // null when output is printed with prefixes
+    private final Path outputDirectory;
+
+    LoxBatch(Supplier<Interpreter> interpreters, int jobs, Path outputDirectory) {
+        this.interpreters = interpreters;
+        this.jobs = jobs;
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Runs the scripts and returns the highest of their exit codes.
+     */
+    int run(List<Path> paths) throws IOException {
+        List<Script> scripts = scripts(paths);
+        if (outputDirectory != null) {
+            Files.createDirectories(outputDirectory);
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>();
+        ExecutorService threads = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<Result>> pending = new ArrayList<>();
+            for (Script script : scripts) {
+                pending.add(threads.submit(() -> run(script)));
+            }
+            for (Future<Result> result : pending) {
+                results.add(result.get());
+                if (outputDirectory == null) {
+                    print(results.get(results.size() - 1));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running scripts.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not run a script: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        summarize(results, elapsed);
+        int status = 0;
+        for (Result result : results) {
+            status = Math.max(status, result.status);
+        }
+        return status;
+    }
+
+    private static List<Script> scripts(List<Path> paths) throws IOException {
+        List<Script> scripts = new ArrayList<>();
+        for (Path path : paths) {
+            if (!Files.isDirectory(path)) {
+                scripts.add(new Script(path, path.toString(), path.getFileName()));
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(path)) {
+                files.filter(file -> Files.isRegularFile(file) && file.toString().endsWith(".lox"))
+                        .sorted()
+                        .forEach(file -> scripts.add(new Script(file, path.relativize(file).toString(),
+                                path.relativize(file))));
+            }
+        }
+        return scripts;
+    }
+
+    private Result run(Script script) throws IOException {
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+        var errors = new PrintStream(err, true, StandardCharsets.UTF_8);
+
+        long start = System.nanoTime();
+        Interpreter interpreter = interpreters.get();
+        interpreter.out = new PrintStream(out, false, StandardCharsets.UTF_8);
+        interpreter.in = new BufferedReader(Reader.nullReader());
+        int status;
+        try {
+            status = Lox.runIsolated(interpreter, script.path, errors);
+        } catch (RuntimeException e) {
+            // a bug in the interpreter must not take the other scripts down with it
+            errors.println("Internal error: " + e);
+            status = 70;
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (outputDirectory != null) {
+            Files.write(outputDirectory.resolve(script.outputName + ".out"), out.toByteArray());
+            Files.write(outputDirectory.resolve(script.outputName + ".err"), err.toByteArray());
+        }
+        return new Result(script, status, nanos, out.toByteArray(), err.toByteArray());
+    }
+
+    private static void print(Result result) {
+        prefix(result.out, "[" + result.script.name + "] ", System.out);
+        prefix(result.err, "[" + result.script.name + "] ", System.err);
+    }
+
+    private static void prefix(byte[] output, String prefix, PrintStream stream) {
+        if (output.length == 0) {
+            return;
+        }
+        for (String line : new String(output, StandardCharsets.UTF_8).split("\n")) {
+            stream.println(prefix + line);
+        }
+    }
+
+    private static void summarize(List<Result> results, long elapsed) {
+        int width = "script".length();
+        for (Result result : results) {
+            width = Math.max(width, result.script.name.length());
+        }
+
+        PrintStream summary = System.err;
+        summary.printf("%-" + width + "s  %-13s  %4s  %10s%n", "script", "status", "exit", "time");
+        for (Result result : results) {
+            summary.printf("%-" + width + "s  %-13s  %4d  %7.1f ms%n", result.script.name, status(result.status),
+                    result.status, result.nanos / 1e6);
+        }
+        double seconds = elapsed / 1e9;
+        summary.printf("%d scripts in %.2f s, %.1f scripts/s%n", results.size(), seconds, results.size() / seconds);
+    }
+
+    private static String status(int exitCode) {
+        switch (exitCode) {
+            case 0:
+                return "ok";
+            case 65:
+                return "compile error";
+            case 66:
+                return "unreadable";
+            default:
+                return "runtime error";
+        }
+    }
+}
@@ -5,4 +5,18 @@ import java.util.List;
 interface LoxCallable {
     Object call(Interpreter interpreter, List<Object> arguments);
     int arity();
+
+    /**
+     * The name shown in profiles and recordings.
+     */
+    default String name() {
+        return toString();
+    }
+
+    /**
+     * The line of the declaration, or 0 when there is none.
+     */
+    default int line() {
+        return 0;
+    }
 }
@@ -0,0 +1,274 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded channel for handing values between tasks, created by the native {@code Channel(capacity)}.
+ * <p>
+ * {@code send} waits while the channel is full and {@code receive} while it is empty. Both park the waiting
+ * thread, which for a task only parks its virtual thread, and a script running with a deadline wakes up when it
+ * passes (see {@link Budget}). After {@code close}, sending is an error and
+ * receiving returns what is left, then {@code nil}. The native {@code select(channels)} receives from whichever
+ * channel in a list has a value first.
+ * <p>
+ * The buffer is a lock-free ring where each slot carries a sequence number telling whether it may be written
+ * or read next, so producers and consumers only contend on a compare-and-set of their own position. Waiting
+ * threads register themselves on the channel before they check it one last time, and every successful send,
+ * receive or close wakes all of them; a channel nobody waits on costs one read of an empty queue per operation.
+ */
+class LoxChannel extends LoxInstance {
+
+    private static final LoxClass CHANNEL = new LoxClass("Channel", 0, Map.of());
+    // stands in for a nil value in the buffer, where null marks a slot without one
+    private static final Object NIL = new Object();
+
+    private final int capacity;
+    private final Object[] buffer;
+    // slot i may be written at position p when its sequence is 2p, and read at position p when it is 2p + 1;
+    // doubling keeps the two apart even when one position later maps to the same slot
+    private final AtomicLongArray sequences;
+    private final AtomicLong sendPosition = new AtomicLong();
+    private final AtomicLong receivePosition = new AtomicLong();
+    private final Queue<Thread> waiting = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+
+    LoxChannel(int capacity) {
+        super(CHANNEL);
+        this.capacity = capacity;
+        this.buffer = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, 2L * i);
+        }
+    }
+
+    /**
+     * Adds the value unless the channel is full.
+     */
+    private boolean offer(Object value) {
+        long position = sendPosition.get();
+        while (true) {
+            int slot = (int) (position % capacity);
+            long difference = sequences.get(slot) - 2 * position;
+            if (difference == 0) {
+                if (sendPosition.compareAndSet(position, position + 1)) {
+                    buffer[slot] = value == null ? NIL : value;
+                    sequences.set(slot, 2 * position + 1);
+                    return true;
+                }
+                position = sendPosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                // another sender took this position
+                position = sendPosition.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the next value, or returns null when the channel is empty.
+     */
+    private Object poll() {
+        long position = receivePosition.get();
+        while (true) {
+            int slot = (int) (position % capacity);
+            long difference = sequences.get(slot) - (2 * position + 1);
+            if (difference == 0) {
+                if (receivePosition.compareAndSet(position, position + 1)) {
+                    Object value = buffer[slot];
+                    buffer[slot] = null;
+                    sequences.set(slot, 2 * (position + capacity));
+                    return value;
+                }
+                position = receivePosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = receivePosition.get();
+            }
+        }
+    }
+
+    private void wake() {
+        if (!waiting.isEmpty()) {
+            for (Thread thread : waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private static void park(Object blocker, Budget budget) {
+        if (budget != null) {
+            LockSupport.parkNanos(blocker, budget.nanosLeft());
+        } else {
+            LockSupport.park(blocker);
+        }
+        if (Thread.interrupted()) {
+            throw new RuntimeError("Interrupted while waiting on a channel.");
+        }
+        if (budget != null) {
+            budget.check(null);
+        }
+    }
+
+    void send(Object value) {
+        send(value, null);
+    }
+
+    /**
+     * Sends the value, waiting while the channel is full, no longer than the budget allows when there is one.
+     */
+    void send(Object value, Budget budget) {
+        if (closed) {
+            throw new RuntimeError("Can't send on a closed channel.");
+        }
+        if (offer(value)) {
+            wake();
+            return;
+        }
+
+        Thread thread = Thread.currentThread();
+        waiting.add(thread);
+        try {
+            while (!offer(value)) {
+                if (closed) {
+                    throw new RuntimeError("Can't send on a closed channel.");
+                }
+                park(this, budget);
+            }
+        } finally {
+            waiting.remove(thread);
+        }
+        wake();
+    }
+
+    Object receive() {
+        return receive(null);
+    }
+
+    /**
+     * Receives a value, waiting while the channel is empty, no longer than the budget allows when there is one.
+     */
+    Object receive(Budget budget) {
+        Object value = poll();
+        if (value == null && !closed) {
+            Thread thread = Thread.currentThread();
+            waiting.add(thread);
+            try {
+                // checked once more after registering, so that a send in between is not missed
+                while ((value = poll()) == null && !closed) {
+                    park(this, budget);
+                }
+            } finally {
+                waiting.remove(thread);
+            }
+        }
+        if (value == null) {
+            // closed, but a value may have arrived just before
+            value = poll();
+        }
+        if (value != null) {
+            wake();
+        }
+        return value == NIL ? null : value;
+    }
+
+    void close() {
+        closed = true;
+        wake();
+    }
+
+    /**
+     * Receives from the first of the channels to have a value and returns a list of that channel and the value,
+     * or nil once all of them are closed and empty. Channels are tried from a random one on, so that a busy
+     * channel can't starve the others.
+     */
+    static LoxList select(LoxChannel[] channels, Budget budget) {
+        LoxList selected = trySelect(channels);
+        if (selected != null) {
+            return selected;
+        }
+        if (allClosed(channels)) {
+            // values sent just before the last close
+            return trySelect(channels);
+        }
+
+        Thread thread = Thread.currentThread();
+        for (LoxChannel channel : channels) {
+            channel.waiting.add(thread);
+        }
+        try {
+            while ((selected = trySelect(channels)) == null && !allClosed(channels)) {
+                park(channels, budget);
+            }
+        } finally {
+            for (LoxChannel channel : channels) {
+                channel.waiting.remove(thread);
+            }
+        }
+        return selected != null ? selected : trySelect(channels);
+    }
+
+    private static LoxList trySelect(LoxChannel[] channels) {
+        int start = ThreadLocalRandom.current().nextInt(channels.length);
+        for (int i = 0; i < channels.length; i++) {
+            LoxChannel channel = channels[(start + i) % channels.length];
+            Object value = channel.poll();
+            if (value != null) {
+                channel.wake();
+                var selected = new LoxList();
+                selected.add(channel);
+                selected.add(value == NIL ? null : value);
+                return selected;
+            }
+        }
+        return null;
+    }
+
+    private static boolean allClosed(LoxChannel[] channels) {
+        for (LoxChannel channel : channels) {
+            if (!channel.closed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "send":
+                return new NativeFunction("Channel." + name.lexeme, 1, (interpreter, arguments) -> {
+                    send(arguments.get(0), interpreter.budget);
+                    return null;
+                });
+            case "receive":
+                return new NativeFunction("Channel." + name.lexeme, 0,
+                        (interpreter, arguments) -> receive(interpreter.budget));
+            case "close":
+                return NativeFunction.method("Channel", name, 0, arguments -> {
+                    close();
+                    return null;
+                });
+            default:
+                throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'");
+        }
+    }
+
+    @Override
+    public void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to channels.");
+    }
+
+    @Override
+    public String toString() {
+        return "<channel " + capacity + ">";
+    }
+}
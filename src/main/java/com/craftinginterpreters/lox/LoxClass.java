@@ -6,13 +6,25 @@ import java.util.Map;
 public class LoxClass implements LoxCallable {
 
     private final String name;
-    private final Map<String, LoxFunction> methods;
+    private final int line;
+    private final Map<String, ? extends LoxMethod> methods;
 
-    LoxClass(String name, Map<String, LoxFunction> methods) {
+    LoxClass(String name, int line, Map<String, ? extends LoxMethod> methods) {
         this.name = name;
+        this.line = line;
         this.methods = methods;
     }
 
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int line() {
+        return line;
+    }
+
     @Override
     public String toString() {
         return name;
@@ -20,24 +32,25 @@ public class LoxClass implements LoxCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        LoxInstance instance = new LoxInstance(this);
-        LoxFunction initializer = findMethod("init");
+        LoxInstance instance = new LoxInstance(this, interpreter.stats);
+        interpreter.stats.instances.increment();
+        LoxMethod initializer = findMethod("init");
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
+            interpreter.call(initializer.bind(instance), arguments);
         }
         return instance;
     }
 
     @Override
     public int arity() {
-        LoxFunction initializer = findMethod("init");
+        LoxMethod initializer = findMethod("init");
         if (initializer == null) {
             return 0;
         }
         return initializer.arity();
     }
 
-    public LoxFunction findMethod(String name) {
+    public LoxMethod findMethod(String name) {
         return methods.get(name);
     }
 }
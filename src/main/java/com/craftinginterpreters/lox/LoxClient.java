@@ -0,0 +1,84 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+
+/**
+ * Runs a script on a {@link LoxDaemon}, as if it were run with {@code jlox <script>}: the script's output,
+ * errors and exit code are the client's own, and the client's standard input is the script's.
+ * <p>
+ * Usage: {@code LoxClient <socket> <script> [arguments...]}
+ */
+public class LoxClient {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: jlox-client <socket> <script> [arguments...]");
+            System.exit(64);
+        }
+
+        SocketChannel daemon;
+        try {
+            daemon = SocketChannel.open(StandardProtocolFamily.UNIX);
+            daemon.connect(UnixDomainSocketAddress.of(args[0]));
+        } catch (IOException e) {
+            System.err.println("Could not connect to the daemon at " + args[0] + ": " + e.getMessage());
+            System.exit(69);
+            return;
+        }
+
+        var output = new DataOutputStream(new BufferedOutputStream(LoxDaemon.output(daemon)));
+        output.writeUTF(Paths.get("").toAbsolutePath().toString());
+        output.writeInt(args.length - 1);
+        for (int i = 1; i < args.length; i++) {
+            output.writeUTF(args[i]);
+        }
+        output.flush();
+
+        var standardInput = new Thread(() -> sendInput(output));
+        // a script that never reads its input must not keep the client from exiting
+        standardInput.setDaemon(true);
+        standardInput.start();
+
+        var input = new DataInputStream(LoxDaemon.input(daemon));
+        try {
+            while (true) {
+                int stream = input.readByte();
+                int length = input.readInt();
+                if (stream == LoxDaemon.EXIT) {
+                    System.out.flush();
+                    System.err.flush();
+                    System.exit(length);
+                }
+                byte[] bytes = input.readNBytes(length);
+                (stream == LoxDaemon.STDERR ? System.err : System.out).write(bytes);
+            }
+        } catch (EOFException e) {
+            System.err.println("The daemon closed the connection before the script finished.");
+            System.exit(70);
+        }
+    }
+
+    private static void sendInput(DataOutputStream output) {
+        byte[] buffer = new byte[8192];
+        try {
+            int read;
+            while ((read = System.in.read(buffer)) > 0) {
+                output.writeInt(read);
+                output.write(buffer, 0, read);
+                output.flush();
+            }
+            output.writeInt(0);
+            output.flush();
+        } catch (IOException e) {
+            // the script finished without reading all of it
+        }
+    }
+}
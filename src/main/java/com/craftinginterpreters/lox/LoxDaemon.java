@@ -0,0 +1,243 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs scripts on behalf of {@link LoxClient}s connecting to a Unix domain socket, started with
+ * {@code jlox --daemon <socket>}. One JVM serves every run, so none pays for starting it or for the interpreter
+ * being compiled again.
+ * <p>
+ * A client sends its working directory, the script path and the script's arguments, then streams its standard
+ * input. The script runs in a fresh interpreter, with the arguments as the global list {@code args} and the input
+ * behind {@code read_line}, while its output and errors are streamed back as they are written. The last message
+ * is the exit code {@link Lox#runFile} would have used. Clients are served concurrently, each on its own virtual
+ * thread.
+ * <p>
+ * The client's messages after the header are chunks of standard input, each a length followed by that many
+ * bytes, and a length of zero at the end of the input. The daemon's messages are a stream number followed by a
+ * length and that many bytes, {@link #STDOUT} or {@link #STDERR}, and finally {@link #EXIT} followed by the exit
+ * code.
+ */
+final class LoxDaemon {
+
+    static final int EXIT = 0;
+    static final int STDOUT = 1;
+    static final int STDERR = 2;
+
+    private final Supplier<Interpreter> interpreters;
+    private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+
+    LoxDaemon(Supplier<Interpreter> interpreters) {
+        this.interpreters = interpreters;
+    }
+
+    void serve(Path socket) throws IOException {
+        removeStaleSocket(socket);
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // nothing left to report to
+                }
+            }));
+            System.err.println("Listening on " + socket.toAbsolutePath());
+
+            while (true) {
+                SocketChannel client = server.accept();
+                sessions.submit(() -> session(client));
+            }
+        }
+    }
+
+    /**
+     * Removes a socket left behind by a daemon that didn't shut down cleanly, once connecting to it shows that
+     * nobody listens. Anything else found at the path, such as a script named by mistake, is left alone.
+     */
+    private static void removeStaleSocket(Path socket) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(socket, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (!attributes.isOther()) {
+            throw new IOException("not a socket, refusing to replace it");
+        }
+        try (var probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            probe.connect(UnixDomainSocketAddress.of(socket));
+            throw new IOException("another daemon is listening on it");
+        } catch (ConnectException e) {
+            Files.delete(socket);
+        }
+    }
+
+    private void session(SocketChannel client) {
+        try (client) {
+            var input = new DataInputStream(input(client));
+            var output = new DataOutputStream(new BufferedOutputStream(output(client)));
+
+            Path directory = Paths.get(input.readUTF());
+            int count = input.readInt();
+            List<String> arguments = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                arguments.add(input.readUTF());
+            }
+            if (arguments.isEmpty()) {
+                return;
+            }
+
+            var out = new PrintStream(new BufferedOutputStream(new Frames(output, STDOUT)), true, StandardCharsets.UTF_8);
+            var err = new PrintStream(new Frames(output, STDERR), true, StandardCharsets.UTF_8);
+            Interpreter interpreter = interpreters.get();
+            interpreter.out = out;
+            interpreter.in = new BufferedReader(new InputStreamReader(new StandardInput(input), StandardCharsets.UTF_8));
+            var args = new LoxList();
+            for (String argument : arguments.subList(1, arguments.size())) {
+                args.add(argument);
+            }
+            interpreter.globals.define("args", args);
+
+            int status = Lox.runIsolated(interpreter, directory.resolve(arguments.get(0)), err);
+            out.flush();
+            err.flush();
+            synchronized (output) {
+                output.writeByte(EXIT);
+                output.writeInt(status);
+                output.flush();
+            }
+        } catch (IOException e) {
+            // the client went away, there is no one left to tell
+        }
+    }
+
+    /**
+     * Reads from the channel without the lock {@link java.nio.channels.Channels#newInputStream} takes, which would
+     * keep a script's output from being sent while the session waits for input.
+     */
+    static InputStream input(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return length == 0 ? 0 : channel.read(ByteBuffer.wrap(bytes, offset, length));
+            }
+        };
+    }
+
+    static OutputStream output(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                var buffer = ByteBuffer.wrap(bytes, offset, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Sends everything written to it as messages of one stream.
+     */
+    private static final class Frames extends OutputStream {
+
+        private final DataOutputStream output;
+        private final int stream;
+
+        Frames(DataOutputStream output, int stream) {
+            this.output = output;
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            // spawned tasks may print at the same time
+            synchronized (output) {
+                output.writeByte(stream);
+                output.writeInt(length);
+                output.write(bytes, offset, length);
+                output.flush();
+            }
+        }
+    }
+
+    /**
+     * The client's standard input, read from the socket chunk by chunk as the script asks for it.
+     */
+    private static final class StandardInput extends InputStream {
+
+        private final DataInputStream input;
+        private int remaining = 0;
+        private boolean ended = false;
+
+        StandardInput(DataInputStream input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining == 0 && !ended) {
+                remaining = input.readInt();
+                ended = remaining == 0;
+            }
+            if (ended) {
+                return -1;
+            }
+            int read = input.read(bytes, offset, Math.min(length, remaining));
+            if (read < 0) {
+                throw new IOException("Client closed its input in the middle of a chunk.");
+            }
+            remaining -= read;
+            return read;
+        }
+    }
+}
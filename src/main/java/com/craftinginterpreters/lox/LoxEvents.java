@@ -0,0 +1,114 @@
+package com.craftinginterpreters.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Flight Recorder events describing what the Lox program is doing, so that recordings show hot Lox functions
+ * next to GC and JIT activity. The events cost next to nothing while no recording has them enabled.
+ */
+final class LoxEvents {
+
+    private static final AtomicBoolean registered = new AtomicBoolean();
+    private static final EventType FUNCTION_CALL = EventType.getEventType(FunctionCall.class);
+
+    private LoxEvents() {
+    }
+
+    @Name("lox.FunctionCall")
+    @Label("Lox Function Call")
+    @Category("Lox")
+    @Description("A call of a Lox function, class or native function that took longer than the threshold")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static class FunctionCall extends Event {
+        @Label("Function")
+        String function;
+
+        @Label("Line")
+        @Description("Line of the declaration, 0 for native functions")
+        int line;
+    }
+
+    @Name("lox.RuntimeError")
+    @Label("Lox Runtime Error")
+    @Category("Lox")
+    @StackTrace(false)
+    static class RuntimeErrorEvent extends Event {
+        @Label("Message")
+        String message;
+
+        @Label("Line")
+        int line;
+    }
+
+    @Name("lox.Phase")
+    @Label("Lox Front-End Phase")
+    @Category("Lox")
+    @Description("Parsing or resolving a script or module")
+    @StackTrace(false)
+    static class Phase extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Statements")
+        int statements;
+    }
+
+    @Name("lox.Counters")
+    @Label("Lox Counters")
+    @Category("Lox")
+    @Period("1 s")
+    @StackTrace(false)
+    static class Counters extends Event {
+        @Label("Interpreter")
+        long interpreter;
+
+        @Label("Environments Created")
+        long environments;
+
+        @Label("Instances Created")
+        long instances;
+    }
+
+    /**
+     * Whether a recording has function calls enabled, asked before every call so that no event is created
+     * while none has.
+     */
+    static boolean functionCallsEnabled() {
+        return FUNCTION_CALL.isEnabled();
+    }
+
+    static void registerPeriodicEvents() {
+        if (registered.compareAndSet(false, true)) {
+            FlightRecorder.addPeriodicEvent(Counters.class, () -> {
+                for (InterpreterStats stats : InterpreterStats.live()) {
+                    var event = new Counters();
+                    event.interpreter = stats.id;
+                    event.environments = stats.getEnvironmentsCreated();
+                    event.instances = stats.getInstancesCreated();
+                    event.commit();
+                }
+            });
+        }
+    }
+
+    static void runtimeError(RuntimeError error) {
+        var event = new RuntimeErrorEvent();
+        if (event.isEnabled()) {
+            event.message = error.getMessage();
+            event.line = error.token.line;
+            event.commit();
+        }
+    }
+}
@@ -1,21 +1,25 @@
 package com.craftinginterpreters.lox;
 
 import java.util.List;
+import java.util.Map;
 
-public class LoxFunction implements LoxCallable {
+public class LoxFunction implements LoxMethod {
 
-    private final Stmt.Function declaration;
+    final Stmt.Function declaration;
     private final Environment closure;
+    // the resolution results of the script the function was declared in
+    private final Map<Expr, Integer> locals;
     private final boolean isInitializer;
 
-    LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+    LoxFunction(Stmt.Function declaration, Environment closure, Map<Expr, Integer> locals, boolean isInitializer) {
         this.declaration = declaration;
         this.closure = closure;
+        this.locals = locals;
         this.isInitializer = isInitializer;
     }
 
-    LoxFunction(Stmt.Function declaration, Environment closure) {
-        this(declaration, closure, false);
+    LoxFunction(Stmt.Function declaration, Environment closure, Map<Expr, Integer> locals) {
+        this(declaration, closure, locals, false);
     }
 
     @Override
@@ -24,13 +28,17 @@ public class LoxFunction implements LoxCallable {
         for (int i = 0; i < declaration.params.size(); i++) {
             environment.define(declaration.params.get(i).lexeme, arguments.get(i));
         }
+        Map<Expr, Integer> previous = interpreter.locals;
         try {
+            interpreter.locals = locals;
             interpreter.executeBlock(declaration.body, environment);
         } catch (Return returnValue) {
             if (isInitializer) {
                 return closure.getAt(0, "this");
             }
             return returnValue.value;
+        } finally {
+            interpreter.locals = previous;
         }
 
         if (isInitializer) {
@@ -44,14 +52,26 @@ public class LoxFunction implements LoxCallable {
         return declaration.params.size();
     }
 
+    @Override
+    public String name() {
+        return declaration.name.lexeme;
+    }
+
+    @Override
+    public int line() {
+        return declaration.name.line;
+    }
+
     @Override
     public String toString() {
         return "<fn " + declaration.name.lexeme + ">";
     }
 
+    @Override
     public LoxFunction bind(LoxInstance instance) {
         Environment environment = new Environment(closure);
         environment.define("this", instance);
-        return new LoxFunction(declaration, environment, isInitializer);
+        closure.stats.boundMethods.increment();
+        return new LoxFunction(declaration, environment, locals, isInitializer);
     }
 }
@@ -3,13 +3,32 @@ package com.craftinginterpreters.lox;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * An instance of a Lox class.
+ * <p>
+ * Fields follow the same rules as variables shared between tasks: once the interpreter that created the instance
+ * has spawned a task each read or write of a field locks the instance, so it is atomic and sees the latest write
+ * to that field. Nothing more is promised; {@code this.count = this.count + 1} is a read and a separate write,
+ * and two tasks doing it at once can lose an update.
+ */
 public class LoxInstance {
 
     private final LoxClass klass;
     private final Map<String, Object> fields = new HashMap<>();
+    // of the interpreter that created the instance, or null for native types, which lock on their own
+    private final InterpreterStats stats;
 
-    LoxInstance(LoxClass klass) {
+    LoxInstance(LoxClass klass, InterpreterStats stats) {
         this.klass = klass;
+        this.stats = stats;
+    }
+
+    LoxInstance(LoxClass klass) {
+        this(klass, null);
+    }
+
+    private boolean shared() {
+        return stats != null && stats.spawned;
     }
 
     @Override
@@ -18,11 +37,20 @@ public class LoxInstance {
     }
 
     public Object get(Token name) {
+        if (shared()) {
+            synchronized (this) {
+                return getField(name);
+            }
+        }
+        return getField(name);
+    }
+
+    private Object getField(Token name) {
         if (fields.containsKey(name.lexeme)) {
             return fields.get(name.lexeme);
         }
 
-        LoxFunction method = klass.findMethod(name.lexeme);
+        LoxMethod method = klass.findMethod(name.lexeme);
         if (method != null) {
             return method.bind(this);
         }
@@ -31,6 +59,12 @@ public class LoxInstance {
     }
 
     public void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+        if (shared()) {
+            synchronized (this) {
+                fields.put(name.lexeme, value);
+            }
+        } else {
+            fields.put(name.lexeme, value);
+        }
     }
 }
@@ -0,0 +1,323 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A growable list, created by the native {@code List()} and used through its methods, e.g. {@code list.add(1)}
+ * or {@code list.get(0)}.
+ * <p>
+ * As long as only numbers have been stored, the elements are kept unboxed in a {@code double[]}. Storing
+ * anything else moves them into an {@code Object[]} once, and the list stays that way. Both arrays double
+ * in size when full, and a script running with limits is charged for the new array (see {@link Budget}).
+ * <p>
+ * Every operation locks the list, so tasks may share one. A sort with a comparison function holds the lock
+ * while it calls back into Lox.
+ */
+class LoxList extends LoxInstance {
+
+    private static final LoxClass LIST = new LoxClass("List", 0, Map.of());
+    private static final double[] NO_NUMBERS = {};
+    // a double or a reference, counted at their uncompressed size
+    private static final int ELEMENT_BYTES = 8;
+
+    // exactly one of the two holds the elements
+    private double[] numbers = NO_NUMBERS;
+    private Object[] objects = null;
+    private int size = 0;
+
+    LoxList() {
+        super(LIST);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Whether the elements are still kept in the {@code double[]}.
+     */
+    synchronized boolean unboxed() {
+        return numbers != null;
+    }
+
+    synchronized Object get(int index) {
+        return numbers != null ? (Object) numbers[index] : objects[index];
+    }
+
+    synchronized void add(Object value) {
+        add(value, null);
+    }
+
+    /**
+     * Adds the value, charging the array the list grows into to the budget, when there is one.
+     */
+    synchronized void add(Object value, Budget budget) {
+        if (numbers != null && value instanceof Double number) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, charged(grow(size), budget));
+            }
+            numbers[size++] = number;
+            return;
+        }
+
+        if (numbers != null) {
+            box(charged(grow(size), budget));
+        } else if (size == objects.length) {
+            objects = Arrays.copyOf(objects, charged(grow(size), budget));
+        }
+        objects[size++] = value;
+    }
+
+    synchronized void set(int index, Object value) {
+        set(index, value, null);
+    }
+
+    synchronized void set(int index, Object value, Budget budget) {
+        if (numbers != null && value instanceof Double number) {
+            numbers[index] = number;
+            return;
+        }
+
+        if (numbers != null) {
+            box(charged(numbers.length, budget));
+        }
+        objects[index] = value;
+    }
+
+    void addAll(LoxList other) {
+        addAll(other, null);
+    }
+
+    void addAll(LoxList other, Budget budget) {
+        // copied under the other list's lock first, so that two lists are never locked at once
+        append(other == this ? this : other.copy(), budget);
+    }
+
+    private synchronized LoxList copy() {
+        var copy = new LoxList();
+        copy.numbers = numbers != null ? Arrays.copyOf(numbers, size) : null;
+        copy.objects = objects != null ? Arrays.copyOf(objects, size) : null;
+        copy.size = size;
+        return copy;
+    }
+
+    private synchronized void append(LoxList other, Budget budget) {
+        int count = other.size;
+        if (numbers != null && other.numbers != null) {
+            if (size + count > numbers.length) {
+                numbers = Arrays.copyOf(numbers, charged(Math.max(grow(size), size + count), budget));
+            }
+            System.arraycopy(other.numbers, 0, numbers, size, count);
+            size += count;
+            return;
+        }
+
+        if (numbers != null) {
+            box(charged(Math.max(grow(size), size + count), budget));
+        } else if (size + count > objects.length) {
+            objects = Arrays.copyOf(objects, charged(Math.max(grow(size), size + count), budget));
+        }
+        for (int i = 0; i < count; i++) {
+            // read through get, the other list may still hold numbers; also covers adding a list to itself
+            objects[size + i] = other.get(i);
+        }
+        size += count;
+    }
+
+    synchronized Object pop() {
+        if (size == 0) {
+            throw new RuntimeError("Can't pop from an empty list.");
+        }
+        Object last = get(size - 1);
+        if (objects != null) {
+            objects[size - 1] = null;
+        }
+        size--;
+        return last;
+    }
+
+    private static int grow(int size) {
+        return Math.max(8, size * 2);
+    }
+
+    /**
+     * Charges a new array of the given capacity to the budget, if any, before it is allocated.
+     */
+    private static int charged(int capacity, Budget budget) {
+        if (budget != null) {
+            budget.collection((long) capacity * ELEMENT_BYTES);
+        }
+        return capacity;
+    }
+
+    /**
+     * Moves the elements into an array of objects with the given capacity.
+     */
+    private void box(int capacity) {
+        objects = new Object[capacity];
+        for (int i = 0; i < size; i++) {
+            objects[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    /**
+     * Sorts numbers in ascending order and strings alphabetically. Other elements need {@link #sort(Comparator)}.
+     */
+    synchronized void sort() {
+        if (numbers != null) {
+            Arrays.sort(numbers, 0, size);
+            return;
+        }
+
+        boolean allNumbers = true;
+        boolean allStrings = true;
+        for (int i = 0; i < size; i++) {
+            allNumbers &= objects[i] instanceof Double;
+            allStrings &= objects[i] instanceof String;
+        }
+        if (allNumbers) {
+            Arrays.sort(objects, 0, size, Comparator.comparing(value -> (Double) value));
+        } else if (allStrings) {
+            Arrays.sort(objects, 0, size, Comparator.comparing(value -> (String) value));
+        } else {
+            throw new RuntimeError("Can only sort lists of numbers or lists of strings without a comparison function.");
+        }
+    }
+
+    synchronized void sort(Comparator<Object> order) {
+        if (numbers != null) {
+            // the unboxed array is sorted in place, boxing is only for the comparison function
+            Double[] boxed = new Double[size];
+            for (int i = 0; i < size; i++) {
+                boxed[i] = numbers[i];
+            }
+            sort(boxed, order);
+            for (int i = 0; i < size; i++) {
+                numbers[i] = boxed[i];
+            }
+            return;
+        }
+        sort(objects, order);
+    }
+
+    private void sort(Object[] values, Comparator<Object> order) {
+        try {
+            Arrays.sort(values, 0, size, order);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeError("Comparison function is not consistent.");
+        }
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "length":
+                return NativeFunction.method("List", name, 0, arguments -> (double) size());
+            case "get":
+                return NativeFunction.method("List", name, 1, arguments -> {
+                    synchronized (this) {
+                        return get(index(arguments.get(0)));
+                    }
+                });
+            case "set":
+                return new NativeFunction("List." + name.lexeme, 2, (interpreter, arguments) -> {
+                    synchronized (this) {
+                        set(index(arguments.get(0)), arguments.get(1), interpreter.budget);
+                    }
+                    return arguments.get(1);
+                });
+            case "add":
+                return new NativeFunction("List." + name.lexeme, 1, (interpreter, arguments) -> {
+                    add(arguments.get(0), interpreter.budget);
+                    return null;
+                });
+            case "addAll":
+                return new NativeFunction("List." + name.lexeme, 1, (interpreter, arguments) -> {
+                    if (!(arguments.get(0) instanceof LoxList other)) {
+                        throw new RuntimeError("Can only add all elements of another list.");
+                    }
+                    addAll(other, interpreter.budget);
+                    return null;
+                });
+            case "pop":
+                return NativeFunction.method("List", name, 0, arguments -> pop());
+            case "sort":
+                return NativeFunction.method("List", name, 0, arguments -> {
+                    sort();
+                    return null;
+                });
+            case "sortWith":
+                return new NativeFunction("List." + name.lexeme, 1, (interpreter, arguments) -> {
+                    if (!(arguments.get(0) instanceof LoxCallable compare) || compare.arity() != 2) {
+                        throw new RuntimeError("Can only sort with a function of two arguments.");
+                    }
+                    sort((a, b) -> {
+                        if (!(interpreter.call(compare, Arrays.asList(a, b)) instanceof Double order)) {
+                            throw new RuntimeError("Comparison function must return a number.");
+                        }
+                        return Double.compare(order, 0.0);
+                    });
+                    return null;
+                });
+            default:
+                throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'");
+        }
+    }
+
+    @Override
+    public void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to lists.");
+    }
+
+    private int index(Object value) {
+        if (!(value instanceof Double number) || number != Math.floor(number)) {
+            throw new RuntimeError("List index must be a whole number.");
+        }
+        if (number < 0 || number >= size) {
+            throw new RuntimeError("List index " + Interpreter.stringify(number) + " is out of range.");
+        }
+        return number.intValue();
+    }
+
+    private synchronized Object[] elements() {
+        var elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = get(i);
+        }
+        return elements;
+    }
+
+    /**
+     * Appends the elements as copied under the lock, which is not held while they are printed, so that printing
+     * two lists holding each other from two tasks can't deadlock.
+     */
+    void print(StringBuilder text, Set<Object> printing) {
+        if (!printing.add(this)) {
+            text.append("[...]");
+            return;
+        }
+        Object[] elements = elements();
+        text.append("[");
+        for (int i = 0; i < elements.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            Interpreter.stringify(elements[i], text, printing);
+        }
+        text.append("]");
+        printing.remove(this);
+    }
+
+    @Override
+    public String toString() {
+        var text = new StringBuilder();
+        print(text, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return text.toString();
+    }
+}
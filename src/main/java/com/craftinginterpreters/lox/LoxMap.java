@@ -0,0 +1,320 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A hash map with keys of any type but {@code nil}, created by the native {@code Map()}.
+ * <p>
+ * The table uses open addressing with linear probing over parallel arrays, so an entry costs no object of
+ * its own. Each slot keeps the key's hash next to it, which lets a probe skip non-matching slots without
+ * calling {@code equals}. Number keys are stored unboxed in a {@code double[]}, everything else in an
+ * {@code Object[]}. Removal shifts the following entries back instead of leaving tombstones. Keys compare
+ * the way {@code ==} does in Lox, and iteration follows the table, not the order of insertion. A script running
+ * with limits is charged for the arrays the table grows into (see {@link Budget}).
+ * <p>
+ * Every operation locks the map, so tasks may share one. {@code forEach} calls back into Lox without the lock,
+ * on a snapshot of the entries.
+ */
+class LoxMap extends LoxInstance {
+
+    private static final LoxClass MAP = new LoxClass("Map", 0, Map.of());
+    private static final int EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 8;
+    // a hash, a number key, an object key and a value, references counted at their uncompressed size
+    private static final int SLOT_BYTES = 28;
+
+    // a slot is free when its hash is EMPTY, and holds a number key when it is taken and its object key is null
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private double[] numberKeys = new double[INITIAL_CAPACITY];
+    private Object[] objectKeys = new Object[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size = 0;
+    // changes to the set of keys, so that forEach notices when the callback adds or removes some
+    private int modifications = 0;
+
+    LoxMap() {
+        super(MAP);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // not an overload of get(Token), which reads a property
+    synchronized Object lookup(Object key) {
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : null;
+    }
+
+    synchronized boolean has(Object key) {
+        return find(key) >= 0;
+    }
+
+    synchronized void put(Object key, Object value) {
+        put(key, value, null);
+    }
+
+    /**
+     * Puts the entry, charging the arrays the table grows into to the budget, when there is one.
+     */
+    synchronized void put(Object key, Object value, Budget budget) {
+        if (key == null) {
+            throw new RuntimeError("Map keys can't be nil.");
+        }
+
+        int slot = find(key);
+        if (slot >= 0) {
+            values[slot] = value;
+            return;
+        }
+
+        if (size + 1 > hashes.length - hashes.length / 4) {
+            resize(budget);
+            slot = find(key);
+        }
+        slot = ~slot;
+        hashes[slot] = hash(key);
+        if (key instanceof Double number) {
+            numberKeys[slot] = number;
+        } else {
+            objectKeys[slot] = key;
+        }
+        values[slot] = value;
+        size++;
+        modifications++;
+    }
+
+    synchronized Object remove(Object key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        Object value = values[slot];
+
+        // move later entries of the same run back into the gap, so that no probe stops early
+        int mask = hashes.length - 1;
+        int free = slot;
+        for (int next = (free + 1) & mask; hashes[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                hashes[free] = hashes[next];
+                numberKeys[free] = numberKeys[next];
+                objectKeys[free] = objectKeys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        hashes[free] = EMPTY;
+        objectKeys[free] = null;
+        values[free] = null;
+
+        size--;
+        modifications++;
+        return value;
+    }
+
+    /**
+     * Returns the slot holding the key, or the bitwise complement of the free slot where it would go.
+     */
+    private int find(Object key) {
+        if (key == null) {
+            return ~0;
+        }
+
+        int hash = hash(key);
+        int mask = hashes.length - 1;
+        int slot = hash & mask;
+        if (key instanceof Double number) {
+            long bits = Double.doubleToLongBits(number);
+            for (; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && objectKeys[slot] == null
+                        && Double.doubleToLongBits(numberKeys[slot]) == bits) {
+                    return slot;
+                }
+            }
+        } else {
+            for (; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && key.equals(objectKeys[slot])) {
+                    return slot;
+                }
+            }
+        }
+        return ~slot;
+    }
+
+    private static int hash(Object key) {
+        int hash;
+        if (key instanceof Double number) {
+            // the same bits Double.equals compares, so that keys equal in Lox land in the same slot
+            long bits = Double.doubleToLongBits(number);
+            hash = (int) (bits ^ (bits >>> 32));
+        } else {
+            hash = key.hashCode();
+        }
+        // small numbers differ only in their high bits, spread them over the low bits used for the slot
+        hash *= 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private void resize(Budget budget) {
+        int[] oldHashes = hashes;
+        double[] oldNumberKeys = numberKeys;
+        Object[] oldObjectKeys = objectKeys;
+        Object[] oldValues = values;
+
+        int capacity = oldHashes.length * 2;
+        if (budget != null) {
+            budget.collection((long) capacity * SLOT_BYTES);
+        }
+        hashes = new int[capacity];
+        numberKeys = new double[capacity];
+        objectKeys = new Object[capacity];
+        values = new Object[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] == EMPTY) {
+                continue;
+            }
+            // keys are known to be distinct, so only a free slot is needed
+            int slot = oldHashes[i] & mask;
+            while (hashes[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = oldHashes[i];
+            numberKeys[slot] = oldNumberKeys[i];
+            objectKeys[slot] = oldObjectKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private Object key(int slot) {
+        return objectKeys[slot] != null ? objectKeys[slot] : (Object) numberKeys[slot];
+    }
+
+    synchronized LoxList keys() {
+        var keys = new LoxList();
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != EMPTY) {
+                keys.add(key(slot));
+            }
+        }
+        return keys;
+    }
+
+    synchronized LoxList values() {
+        var list = new LoxList();
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != EMPTY) {
+                list.add(values[slot]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * The keys and values, one after the other.
+     */
+    private synchronized Object[] entries() {
+        var entries = new Object[size * 2];
+        int entry = 0;
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != EMPTY) {
+                entries[entry++] = key(slot);
+                entries[entry++] = values[slot];
+            }
+        }
+        return entries;
+    }
+
+    private void forEach(Interpreter interpreter, LoxCallable function) {
+        Object[] entries;
+        int expected;
+        synchronized (this) {
+            entries = entries();
+            expected = modifications;
+        }
+
+        for (int entry = 0; entry < entries.length; entry += 2) {
+            interpreter.call(function, Arrays.asList(entries[entry], entries[entry + 1]));
+            synchronized (this) {
+                if (modifications != expected) {
+                    throw new RuntimeError("Map keys changed while iterating over them.");
+                }
+            }
+        }
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "size":
+                return NativeFunction.method("Map", name, 0, arguments -> (double) size());
+            case "get":
+                return NativeFunction.method("Map", name, 1, arguments -> lookup(arguments.get(0)));
+            case "has":
+                return NativeFunction.method("Map", name, 1, arguments -> has(arguments.get(0)));
+            case "put":
+                return new NativeFunction("Map." + name.lexeme, 2, (interpreter, arguments) -> {
+                    put(arguments.get(0), arguments.get(1), interpreter.budget);
+                    return null;
+                });
+            case "remove":
+                return NativeFunction.method("Map", name, 1, arguments -> remove(arguments.get(0)));
+            case "keys":
+                return NativeFunction.method("Map", name, 0, arguments -> keys());
+            case "values":
+                return NativeFunction.method("Map", name, 0, arguments -> values());
+            case "forEach":
+                return new NativeFunction("Map." + name.lexeme, 1, (interpreter, arguments) -> {
+                    if (!(arguments.get(0) instanceof LoxCallable function) || function.arity() != 2) {
+                        throw new RuntimeError("Can only iterate with a function of two arguments.");
+                    }
+                    forEach(interpreter, function);
+                    return null;
+                });
+            default:
+                throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'");
+        }
+    }
+
+    @Override
+    public void set(Token name, Object value) {
+        throw new RuntimeError(name, "Can't add properties to maps.");
+    }
+
+    /**
+     * Appends the entries as copied under the lock, which is not held while they are printed, like
+     * {@link LoxList#print}.
+     */
+    void print(StringBuilder text, Set<Object> printing) {
+        if (!printing.add(this)) {
+            text.append("{...}");
+            return;
+        }
+        Object[] entries = entries();
+        text.append("{");
+        for (int entry = 0; entry < entries.length; entry += 2) {
+            if (entry > 0) {
+                text.append(", ");
+            }
+            Interpreter.stringify(entries[entry], text, printing);
+            text.append(": ");
+            Interpreter.stringify(entries[entry + 1], text, printing);
+        }
+        text.append("}");
+        printing.remove(this);
+    }
+
+    @Override
+    public String toString() {
+        var text = new StringBuilder();
+        print(text, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return text.toString();
+    }
+}
@@ -0,0 +1,8 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * A function that can be declared in a class body and bound to an instance.
+ */
+interface LoxMethod extends LoxCallable {
+    LoxMethod bind(LoxInstance instance);
+}
@@ -0,0 +1,142 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a function once for every index of a range or element of a list, split across a {@link ForkJoinPool}.
+ * Backs the natives {@code parallel_for(start, end, fn)} and {@code parallel_map(list, fn)}.
+ * <p>
+ * The range is halved until the pieces are small enough to keep every worker busy, and each piece runs on a fork
+ * of the calling interpreter, the same way a spawned task does (see {@link LoxTask}). Results are written to
+ * their own slot, so they come back in order. When a call fails, the pieces stop before indexes past the failing
+ * one, and the error of the lowest failing index is raised with that index, at the line where it happened.
+ */
+final class LoxParallel {
+
+    // pieces per worker, so that a slow piece doesn't leave the other workers idle
+    private static final int PIECES_PER_WORKER = 4;
+
+    private LoxParallel() {
+    }
+
+    /**
+     * Calls the function with every index from start up to, not including, end.
+     */
+    static void forEach(Interpreter interpreter, ForkJoinPool pool, int start, int end, LoxCallable function) {
+        run(interpreter, pool, start, end, index -> (double) index, function, null);
+    }
+
+    /**
+     * Calls the function with every element of the list and returns a new list of the results.
+     */
+    static LoxList map(Interpreter interpreter, ForkJoinPool pool, LoxList list, LoxCallable function) {
+        int size = list.size();
+        Object[] elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = list.get(i);
+        }
+
+        Object[] results = new Object[size];
+        run(interpreter, pool, 0, size, index -> elements[index], function, results);
+        var mapped = new LoxList();
+        for (Object result : results) {
+            mapped.add(result);
+        }
+        return mapped;
+    }
+
+    private interface Argument {
+        Object at(int index);
+    }
+
+    private static void run(Interpreter interpreter, ForkJoinPool pool, int start, int end, Argument argument,
+                            LoxCallable function, Object[] results) {
+        if (start >= end) {
+            return;
+        }
+        // published before any worker starts, so that environments and instances lock from here on
+        interpreter.stats.spawned = true;
+        var work = new Work(interpreter, argument, function, results, start,
+                Math.max(1, (end - start) / (pool.getParallelism() * PIECES_PER_WORKER)));
+        pool.invoke(work.piece(start, end));
+        if (work.error != null) {
+            throw work.error;
+        }
+    }
+
+    /**
+     * What the pieces of one call share.
+     */
+    private static final class Work {
+
+        private final Interpreter interpreter;
+        private final Argument argument;
+        private final LoxCallable function;
+        private final Object[] results;
+        private final int offset;
+        private final int threshold;
+        private final AtomicInteger failedIndex = new AtomicInteger(Integer.MAX_VALUE);
+        private RuntimeError error;
+
+        Work(Interpreter interpreter, Argument argument, LoxCallable function, Object[] results, int offset,
+             int threshold) {
+            this.interpreter = interpreter;
+            this.argument = argument;
+            this.function = function;
+            this.results = results;
+            this.offset = offset;
+            this.threshold = threshold;
+        }
+
+        Piece piece(int start, int end) {
+            return new Piece(this, start, end);
+        }
+
+        synchronized void fail(int index, RuntimeError cause) {
+            if (index < failedIndex.get()) {
+                failedIndex.set(index);
+                error = new RuntimeError(cause.token, "At index " + index + ": " + cause.getMessage());
+            }
+        }
+    }
+
+    private static final class Piece extends RecursiveAction {
+
+        private final Work work;
+        private final int start;
+        private final int end;
+
+        Piece(Work work, int start, int end) {
+            this.work = work;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > work.threshold) {
+                int middle = (start + end) >>> 1;
+                invokeAll(work.piece(start, middle), work.piece(middle, end));
+                return;
+            }
+
+            Interpreter interpreter = work.interpreter.fork();
+            for (int index = start; index < end && index < work.failedIndex.get(); index++) {
+                try {
+                    Object result = interpreter.call(work.function, Arrays.asList(work.argument.at(index)));
+                    if (work.results != null) {
+                        work.results[index - work.offset] = result;
+                    }
+                } catch (RuntimeError error) {
+                    work.fail(index, error);
+                } catch (StackOverflowError error) {
+                    work.fail(index, new RuntimeError("Stack overflow."));
+                }
+            }
+            interpreter.flushStatements();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A function running on its own virtual thread, started by the native {@code spawn(fn)} and joined by
+ * {@code await(task)}, which returns the function's result or raises the error it failed with.
+ * <p>
+ * A task runs on a fork of the spawning interpreter: it shares the globals and the syntax tree, while the
+ * current environment is its own. Variables and fields reachable from more than one task are kept consistent by
+ * {@link Environment} and {@link LoxInstance}: each single read or write is atomic and sees the latest write,
+ * and everything a task did is visible to whoever awaited it. Updates made of a read and a write, such as
+ * {@code count = count + 1}, are not atomic.
+ * <p>
+ * A task nobody awaits is cut short when the script that spawned it ends, so that it doesn't keep running in a
+ * daemon or batch that goes on to other scripts. It stops at its next check of the budget (see {@link Budget}),
+ * or right away when it is waiting, without an error being reported.
+ */
+final class LoxTask {
+
+    private static final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * The tasks spawned while one script runs, cancelled when it ends.
+     */
+    static final class Group {
+
+        private final Set<Future<?>> running = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled = false;
+
+        boolean cancelled() {
+            return cancelled;
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (Future<?> task : running) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    private final Future<Object> result;
+
+    private LoxTask(Future<Object> result) {
+        this.result = result;
+    }
+
+    static LoxTask spawn(Interpreter parent, LoxCallable function) {
+        // published before the thread starts, so that both sides lock from here on
+        parent.stats.spawned = true;
+        Interpreter interpreter = parent.fork();
+        Group group = parent.tasks;
+        interpreter.budget = Budget.forTask(parent, group);
+
+        var task = new FutureTask<>(() -> {
+            try {
+                return interpreter.call(function, new ArrayList<>());
+            } finally {
+                interpreter.flushStatements();
+            }
+        });
+        group.running.add(task);
+        threads.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                group.running.remove(task);
+            }
+        });
+        return new LoxTask(task);
+    }
+
+    /**
+     * Waits for the result, no longer than the budget of the awaiting interpreter allows when there is one.
+     */
+    Object await(Budget budget) {
+        try {
+            if (budget == null) {
+                return result.get();
+            }
+            while (true) {
+                try {
+                    return result.get(budget.nanosLeft(), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    budget.check(null);
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeError error) {
+                throw error;
+            }
+            if (e.getCause() instanceof StackOverflowError) {
+                throw new RuntimeError("Stack overflow in task.");
+            }
+            throw new RuntimeError("Task failed: " + e.getCause() + ".");
+        } catch (CancellationException e) {
+            throw new RuntimeError("Task was stopped when its script ended.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError("Interrupted while awaiting a task.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
@@ -0,0 +1,72 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * UTF-8 script source backed by a memory-mapped file.
+ * <p>
+ * Files that are pure ASCII, which generated scripts nearly always are, are read straight from the mapping
+ * one byte per character, so the source never lives on the heap. Anything else is decoded into a
+ * {@link java.nio.CharBuffer}, which still avoids the extra copy made by building a {@link String}.
+ */
+final class MappedSource implements CharSequence {
+
+    private final ByteBuffer bytes;
+
+    private MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    static CharSequence open(Path path) throws IOException {
+        ByteBuffer bytes;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        // ASCII maps to itself in UTF-8, so its bytes can be used as characters directly
+        if (isAscii(bytes)) {
+            return new MappedSource(bytes);
+        }
+        return StandardCharsets.UTF_8.decode(bytes);
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        for (int i = 0; i < bytes.limit(); i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ByteBuffer bytes() {
+        return bytes;
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) bytes.get(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        byte[] text = new byte[end - start];
+        bytes.get(start, text);
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+}
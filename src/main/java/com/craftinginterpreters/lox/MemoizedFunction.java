@@ -0,0 +1,100 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A function found to be pure by {@link Purity}, whose results are kept in a bounded cache that evicts the least
+ * recently used entry. Only calls whose arguments are all numbers, strings, booleans or {@code nil} are cached,
+ * anything else could be changed between two calls and is passed straight through. The cache is locked for
+ * each lookup and store, but not while the function runs, so tasks calling it at once may both compute a result.
+ * <p>
+ * {@link Purity} only sees the script or module declaring the function, while the importer or a later script
+ * may redefine the functions it calls. The cache is dropped whenever a global holding a function is replaced.
+ */
+class MemoizedFunction implements LoxCallable {
+
+    static final int CAPACITY = 10_000;
+    // stands in for a result of nil, so that a single lookup tells a cached nil from a miss
+    private static final Object NIL = new Object();
+
+    private final LoxCallable function;
+    private final InterpreterStats stats;
+    // the count of replaced global functions the cached results were computed under
+    private int functionsReplaced = 0;
+    private final Map<List<Object>, Object> results = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    MemoizedFunction(LoxCallable function, InterpreterStats stats) {
+        this.function = function;
+        this.stats = stats;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        if (!cacheable(arguments)) {
+            return function.call(interpreter, arguments);
+        }
+
+        Object result;
+        int replaced = interpreter.globals.functionsReplaced();
+        synchronized (results) {
+            if (replaced != functionsReplaced) {
+                results.clear();
+                functionsReplaced = replaced;
+            }
+            result = results.get(arguments);
+        }
+        if (result != null) {
+            stats.memoHits.increment();
+            return result == NIL ? null : result;
+        }
+
+        stats.memoMisses.increment();
+        result = function.call(interpreter, arguments);
+        // the caller owns the argument list, keep a copy as the key
+        synchronized (results) {
+            // not kept if a function was replaced while this one ran
+            if (replaced == functionsReplaced && replaced == interpreter.globals.functionsReplaced()) {
+                results.put(new ArrayList<>(arguments), result == null ? NIL : result);
+            }
+        }
+        return result;
+    }
+
+    private static boolean cacheable(List<Object> arguments) {
+        for (Object argument : arguments) {
+            if (argument != null && !(argument instanceof Double)
+                    && !(argument instanceof String) && !(argument instanceof Boolean)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int arity() {
+        return function.arity();
+    }
+
+    @Override
+    public String name() {
+        return function.name();
+    }
+
+    @Override
+    public int line() {
+        return function.line();
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
@@ -0,0 +1,164 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Loads and evaluates the files named by {@code import} declarations for one interpreter.
+ * <p>
+ * Before a script runs, {@link #preload} walks its import graph one level at a time and scans, parses and
+ * resolves all files of a level in parallel on the common fork-join pool. Prepared modules are kept together
+ * with a hash of their source, so a later script importing the same file only re-processes it when its
+ * content has changed. Each version of a module is evaluated at most once, in the global scope, the first
+ * time one of its import declarations is executed.
+ */
+class ModuleLoader {
+
+    private record Module(Path path, String hash, PreparedScript script) {
+    }
+
+    private final Map<Path, Module> modules = new ConcurrentHashMap<>();
+    // the file each import declaration refers to, resolved against the directory of the importing file
+    private final Map<Stmt.Import, Path> targets = Collections.synchronizedMap(new IdentityHashMap<>());
+    // guarded, since spawned tasks may execute import declarations at the same time
+    private final Set<Module> evaluated = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    private ParseCache parseCache = null;
+
+    void setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Loads every module reachable from a script that was not read from a file, such as one typed into the prompt.
+     */
+    boolean preload(PreparedScript script, Path directory) {
+        return preload(script, directory, null);
+    }
+
+    /**
+     * Loads every module reachable from the script read from the given file, reporting errors through
+     * {@link Lox#error}. Returns whether all of them could be loaded. A module importing the script itself is an
+     * error, since the script would run a second time, in the middle of its own imports.
+     */
+    boolean preload(PreparedScript script, Path directory, Path file) {
+        // the workers report where the calling thread does
+        PrintStream errors = Lox.errors();
+        Path root = file != null ? file.toAbsolutePath().normalize() : null;
+        Set<Path> seen = new HashSet<>();
+        if (root != null) {
+            seen.add(root);
+        }
+        boolean loadedAll = !importsRoot(script, root, root);
+        List<Stmt.Import> level = imports(script, directory, seen);
+        while (!level.isEmpty()) {
+            List<ForkJoinTask<Module>> tasks = new ArrayList<>();
+            for (Stmt.Import stmt : level) {
+                tasks.add(ForkJoinPool.commonPool().submit(() -> Lox.reportingTo(errors, () -> load(stmt))));
+            }
+
+            List<Stmt.Import> next = new ArrayList<>();
+            for (ForkJoinTask<Module> task : tasks) {
+                Module module = task.join();
+                if (module != null) {
+                    loadedAll &= !importsRoot(module.script, module.path, root);
+                    next.addAll(imports(module.script, module.path.getParent(), seen));
+                } else {
+                    loadedAll = false;
+                }
+            }
+            level = next;
+        }
+        return loadedAll;
+    }
+
+    void evaluate(Stmt.Import stmt, Interpreter interpreter) {
+        Path path = target(stmt);
+        Module module = modules.get(path);
+        if (module == null) {
+            // not seen by preload, e.g. an import typed into the prompt
+            module = load(stmt);
+            if (module == null) {
+                throw new RuntimeError(stmt.path, "Could not load module '" + stmt.path.literal + "'.");
+            }
+        }
+
+        if (evaluated.add(module)) {
+            interpreter.executeModule(module.script);
+        }
+    }
+
+    private List<Stmt.Import> imports(PreparedScript script, Path directory, Set<Path> seen) {
+        List<Stmt.Import> imports = new ArrayList<>();
+        for (Stmt statement : script.statements) {
+            if (statement instanceof Stmt.Import stmt) {
+                Path path = directory.resolve((String) stmt.path.literal).toAbsolutePath().normalize();
+                targets.put(stmt, path);
+                if (seen.add(path)) {
+                    imports.add(stmt);
+                }
+            }
+        }
+        return imports;
+    }
+
+    private boolean importsRoot(PreparedScript script, Path file, Path root) {
+        if (root == null) {
+            return false;
+        }
+        boolean found = false;
+        for (Stmt statement : script.statements) {
+            if (statement instanceof Stmt.Import stmt
+                    && file.resolveSibling((String) stmt.path.literal).normalize().equals(root)) {
+                Lox.error(stmt.path, "Import cycle: '" + file + "' imports the script being run.");
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private Path target(Stmt.Import stmt) {
+        return targets.computeIfAbsent(stmt, s -> Paths.get((String) s.path.literal).toAbsolutePath().normalize());
+    }
+
+    private Module load(Stmt.Import stmt) {
+        Path path = target(stmt);
+
+        CharSequence source;
+        try {
+            source = MappedSource.open(path);
+        } catch (IOException e) {
+            Lox.error(stmt.path, "Cannot read module '" + path + "'.");
+            return null;
+        }
+
+        String hash = ParseCache.hash(source);
+        Module cached = modules.get(path);
+        if (cached != null && cached.hash.equals(hash)) {
+            return cached;
+        }
+
+        PreparedScript script = parseCache != null ? parseCache.prepare(source) : PreparedScript.prepare(source);
+        if (script == null) {
+            return null;
+        }
+
+        Module module = new Module(path, hash, script);
+        // register where the module's own imports point to, in case it is loaded outside of preload
+        imports(script, path.getParent(), new HashSet<>());
+        modules.put(path, module);
+        return module;
+    }
+}
@@ -0,0 +1,52 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A function implemented in Java and defined as a global by the interpreter.
+ */
+class NativeFunction implements LoxCallable {
+
+    interface Body {
+        Object call(Interpreter interpreter, List<Object> arguments);
+    }
+
+    private final String name;
+    private final int arity;
+    private final Body body;
+
+    NativeFunction(String name, int arity, Body body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    /**
+     * A method of a native object, bound to it by the lambda and returned when the property is read. It is named
+     * after the type it belongs to, such as {@code List.add}, since every read returns a new function.
+     */
+    static NativeFunction method(String type, Token name, int arity, Function<List<Object>, Object> body) {
+        return new NativeFunction(type + "." + name.lexeme, arity, (interpreter, arguments) -> body.apply(arguments));
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return body.call(interpreter, arguments);
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
@@ -0,0 +1,100 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * On-disk cache of resolved syntax trees, keyed by a hash of the script source.
+ * <p>
+ * A hit memory-maps the cached file and decodes it with {@link AstReader}, skipping the scanner, parser and
+ * resolver entirely. A miss runs the front-end as usual and stores the result for the next run. Entries are
+ * never invalidated explicitly: changing the source changes its hash, and a file in an older format is treated
+ * as a miss and overwritten.
+ */
+class ParseCache {
+
+    private static final String EXTENSION = ".loxc";
+    private static final int HASH_CHUNK = 64 * 1024;
+
+    private final Path directory;
+
+    ParseCache(Path directory) {
+        this.directory = directory;
+    }
+
+    PreparedScript prepare(CharSequence source) {
+        Path entry = directory.resolve(hash(source) + EXTENSION);
+
+        PreparedScript cached = load(entry);
+        if (cached != null) {
+            return cached;
+        }
+
+        PreparedScript prepared = PreparedScript.prepare(source);
+        if (prepared != null) {
+            store(entry, prepared);
+        }
+        return prepared;
+    }
+
+    private PreparedScript load(Path entry) {
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+
+        try (var channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return AstReader.read(buffer);
+        } catch (IOException | IllegalArgumentException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            // an unreadable or stale entry is no worse than a miss
+            return null;
+        }
+    }
+
+    private void store(Path entry, PreparedScript prepared) {
+        try {
+            Files.createDirectories(directory);
+            // write next to the entry and move it into place, so a concurrent reader never sees a partial file
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            Files.write(temp, AstWriter.write(prepared));
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write parse cache entry " + entry + ": " + e.getMessage());
+        }
+    }
+
+    static String hash(CharSequence source) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            // encode in chunks so that hashing a large mapped source does not copy all of it onto the heap
+            var encoder = StandardCharsets.UTF_8.newEncoder();
+            int start = 0;
+            while (start < source.length()) {
+                int end = Math.min(start + HASH_CHUNK, source.length());
+                if (end < source.length() && Character.isHighSurrogate(source.charAt(end - 1))) {
+                    // keep surrogate pairs in one chunk
+                    end++;
+                }
+                digest.update(encoder.encode(CharBuffer.wrap(source, start, end)));
+                start = end;
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("Source is not valid text.", e);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,16 +1,85 @@
 package com.craftinginterpreters.lox;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.craftinginterpreters.lox.TokenType.*;
 
 public class Parser {
-    private final List<Token> tokens;
-    private int current = 0;
+    /**
+     * Binding powers of the infix operators, from loosest to tightest.
+     */
+    private enum Precedence {
+        NONE,
+        ASSIGNMENT, // =
+        OR,         // or
+        AND,        // and
+        EQUALITY,   // == !=
+        COMPARISON, // < > <= >=
+        TERM,       // + -
+        FACTOR,     // * /
+        UNARY,      // ! -
+        CALL,       // . ()
+    }
+
+    private interface PrefixRule {
+        Expr parse(Parser parser);
+    }
+
+    private interface InfixRule {
+        Expr parse(Parser parser, Expr left);
+    }
+
+    // expressions are parsed Pratt-style from these tables, indexed by token type, instead of descending through
+    // one method per precedence level for every operand
+    private static final PrefixRule[] PREFIX_RULES = new PrefixRule[TokenType.values().length];
+    private static final InfixRule[] INFIX_RULES = new InfixRule[TokenType.values().length];
+    private static final Precedence[] PRECEDENCES = new Precedence[TokenType.values().length];
+
+    static {
+        Arrays.fill(PRECEDENCES, Precedence.NONE);
+
+        prefix(Parser::literal, FALSE, TRUE, NIL, NUMBER, STRING);
+        prefix(Parser::self, THIS);
+        prefix(Parser::variable, IDENTIFIER);
+        prefix(Parser::grouping, LEFT_PAREN);
+        prefix(Parser::unary, BANG, MINUS);
+
+        infix(Precedence.ASSIGNMENT, Parser::assignment, EQUAL);
+        infix(Precedence.OR, Parser::logical, OR);
+        infix(Precedence.AND, Parser::logical, AND);
+        infix(Precedence.EQUALITY, Parser::binary, BANG_EQUAL, EQUAL_EQUAL);
+        infix(Precedence.COMPARISON, Parser::binary, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL);
+        infix(Precedence.TERM, Parser::binary, MINUS, PLUS);
+        infix(Precedence.FACTOR, Parser::binary, SLASH, STAR);
+        infix(Precedence.CALL, Parser::call, LEFT_PAREN);
+        infix(Precedence.CALL, Parser::get, DOT);
+    }
+
+    private static void prefix(PrefixRule rule, TokenType... types) {
+        for (TokenType type : types) {
+            PREFIX_RULES[type.ordinal()] = rule;
+        }
+    }
+
+    private static void infix(Precedence precedence, InfixRule rule, TokenType... types) {
+        for (TokenType type : types) {
+            INFIX_RULES[type.ordinal()] = rule;
+            PRECEDENCES[type.ordinal()] = precedence;
+        }
+    }
+
+    // the parser only ever looks at the current and the previous token, so tokens are pulled one at a time
+    private final TokenStream tokens;
 
     Parser(List<Token> tokens) {
+        this(new ListTokens(tokens));
+    }
+
+    Parser(TokenStream tokens) {
         this.tokens = tokens;
+        tokens.next();
     }
 
     List<Stmt> parse() {
@@ -32,6 +101,9 @@ public class Parser {
             if (match(VAR)) {
                 return varDeclaration();
             }
+            if (match(IMPORT)) {
+                return importDeclaration();
+            }
 
             return statement();
         } catch (ParseError error) {
@@ -42,20 +114,20 @@ public class Parser {
 
     private Stmt classDeclaration() {
         Token name = consume(IDENTIFIER, "Expect class name.");
-        consume(LEFT_BRACE, "Expect '{' before class body.");
+        expect(LEFT_BRACE, "Expect '{' before class body.");
 
         List<Stmt.Function> methods = new ArrayList<>();
         while(!check(RIGHT_BRACE) && !isAtEnd()) {
             methods.add(function("method"));
         }
 
-        consume(RIGHT_BRACE, "Expect '}' after class body.");
+        expect(RIGHT_BRACE, "Expect '}' after class body.");
         return new Stmt.Class(name, methods);
     }
 
     private Stmt.Function function(String kind) {
         Token name = consume(IDENTIFIER, "Expect " + kind + " name.");
-        consume(LEFT_PAREN, "Expect '(' after " + kind + " name.");
+        expect(LEFT_PAREN, "Expect '(' after " + kind + " name.");
         List<Token> parameters = new ArrayList<>();
         if (!check(RIGHT_PAREN)) {
             do {
@@ -66,9 +138,9 @@ public class Parser {
                 parameters.add(consume(IDENTIFIER, "Expect parameter name."));
             } while (match(COMMA));
         }
-        consume(RIGHT_PAREN, "Expect ')' after parameters.");
+        expect(RIGHT_PAREN, "Expect ')' after parameters.");
 
-        consume(LEFT_BRACE, "Expect '{' before " + kind + " body.");
+        expect(LEFT_BRACE, "Expect '{' before " + kind + " body.");
         List<Stmt> body = block();
         return new Stmt.Function(name, parameters, body);
     }
@@ -81,10 +153,17 @@ public class Parser {
             initializer = expression();
         }
 
-        consume(SEMICOLON, "Expect ';' after variable declaration.");
+        expect(SEMICOLON, "Expect ';' after variable declaration.");
         return new Stmt.Var(name, initializer);
     }
 
+    private Stmt importDeclaration() {
+        Token keyword = previous();
+        Token path = consume(STRING, "Expect module path after 'import'.");
+        expect(SEMICOLON, "Expect ';' after module path.");
+        return new Stmt.Import(keyword, path);
+    }
+
     private Stmt statement() {
         if (match(FOR)) {
             return forStatement();
@@ -114,12 +193,12 @@ public class Parser {
         if (!check(SEMICOLON)) {
             value = expression();
         }
-        consume(SEMICOLON, "Expect ';' afer return value.");
+        expect(SEMICOLON, "Expect ';' afer return value.");
         return new Stmt.Return(keyword, value);
     }
 
     private Stmt forStatement() {
-        consume(LEFT_PAREN, "Expect '(' after 'for'.");
+        expect(LEFT_PAREN, "Expect '(' after 'for'.");
 
         Stmt initializer;
         if (match(SEMICOLON)) {
@@ -134,13 +213,13 @@ public class Parser {
         if (!check(SEMICOLON)) {
             condition = expression();
         }
-        consume(SEMICOLON, "Expect ';' after for loop condition.");
+        expect(SEMICOLON, "Expect ';' after for loop condition.");
 
         Expr increment = null;
         if (!check(RIGHT_PAREN)) {
             increment = expression();
         }
-        consume(RIGHT_PAREN, "Expect ')' after for clauses.");
+        expect(RIGHT_PAREN, "Expect ')' after for clauses.");
 
         Stmt body = statement();
 
@@ -164,18 +243,18 @@ public class Parser {
     }
 
     private Stmt whileStatement() {
-        consume(LEFT_PAREN, "Expect '(' after 'while'.");
+        expect(LEFT_PAREN, "Expect '(' after 'while'.");
         Expr condition = expression();
-        consume(RIGHT_PAREN, "Expect ')' after 'while' condition.");
+        expect(RIGHT_PAREN, "Expect ')' after 'while' condition.");
 
         Stmt body = statement();
         return new Stmt.While(condition, body);
     }
 
     private Stmt ifStatement() {
-        consume(LEFT_PAREN, "Expect '(' after 'if'.");
+        expect(LEFT_PAREN, "Expect '(' after 'if'.");
         Expr condition = expression();
-        consume(RIGHT_PAREN, "Expect ')' after if condition.");
+        expect(RIGHT_PAREN, "Expect ')' after if condition.");
 
         Stmt thenBranch = statement();
         Stmt elseBranch = null;
@@ -187,14 +266,15 @@ public class Parser {
     }
 
     private Stmt printStatement() {
+        Token keyword = previous();
         Expr value = expression();
-        consume(SEMICOLON, "Expect ';' after value.");
-        return new Stmt.Print(value);
+        expect(SEMICOLON, "Expect ';' after value.");
+        return new Stmt.Print(keyword, value);
     }
 
     private Stmt expressionStatement() {
         Expr expr = expression();
-        consume(SEMICOLON, "Expect ';' after expression.");
+        expect(SEMICOLON, "Expect ';' after expression.");
         return new Stmt.Expression(expr);
     }
 
@@ -205,157 +285,75 @@ public class Parser {
             statements.add(declaration());
         }
 
-        consume(RIGHT_BRACE, "Expect '}' after block.");
+        expect(RIGHT_BRACE, "Expect '}' after block.");
 
         return statements;
     }
 
     Expr expression() {
-        return assignment();
-    }
-
-    private Expr assignment() {
-        Expr expr = or();
-
-        if (match(EQUAL)) {
-            Token equals = previous();
-            Expr value = assignment();
-
-            if (expr instanceof Expr.Variable) {
-                Token name = ((Expr.Variable)expr).name;
-                return new Expr.Assign(name, value);
-            } else if (expr instanceof Expr.Get) {
-                var get = (Expr.Get) expr;
-                return new Expr.Set(get.object, get.name, value);
-            }
-
-            // why don't we go try to synchronize here?
-            error(equals, "Invalid assignment target.");
-        }
-
-        return expr;
+        return expression(Precedence.NONE);
     }
 
-    private Expr or() {
-        Expr expr = and();
-
-        while (match(OR)) {
-            Token operator = previous();
-            Expr right = and();
-            expr = new Expr.Logical(expr, operator, right);
+    /**
+     * Parses an expression whose operators all bind tighter than {@code precedence}. Operators of equal
+     * precedence are left to the caller, which makes binary operators left-associative.
+     */
+    private Expr expression(Precedence precedence) {
+        PrefixRule prefix = PREFIX_RULES[tokens.peekType().ordinal()];
+        if (prefix == null) {
+            throw error(peek(), "Expect expression.");
         }
+        advance();
+        Expr expr = prefix.parse(this);
 
-        return expr;
-    }
-
-    private Expr and() {
-        Expr expr = equality();
-
-        while (match(AND)) {
-            Token operator = previous();
-            Expr right = equality();
-            expr = new Expr.Logical(expr, operator, right);
+        while (precedence.compareTo(PRECEDENCES[tokens.peekType().ordinal()]) < 0) {
+            InfixRule infix = INFIX_RULES[tokens.peekType().ordinal()];
+            advance();
+            expr = infix.parse(this, expr);
         }
 
         return expr;
     }
 
-    // TODO: figure out how to use series
-//    private Expr series() {
-//        Expr expr = equality();
-//
-//        if (peek().type != COMMA) {
-//            // not a series, just return the equality expression
-//            return expr;
-//        }
-//
-//        List<Expr> expressions = new ArrayList<>() {{
-//            add(expr);
-//        }};
-//
-//        while (match(COMMA)) {
-//            expressions.add(equality());
-//        }
-//
-//        return new Expr.Series(expressions);
-//    }
-
-    private Expr equality() {
-        Expr expr = comparison();
-
-        while (match(BANG_EQUAL, EQUAL_EQUAL)) {
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
+    // TODO: figure out how to use series, probably as a COMMA infix rule between NONE and ASSIGNMENT
 
-    private Expr comparison() {
-        Expr expr = term();
+    private Expr assignment(Expr target) {
+        Token equals = previous();
+        // assignment is right-associative, so the value may itself be an assignment
+        Expr value = expression(Precedence.NONE);
 
-        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
+        if (target instanceof Expr.Variable) {
+            Token name = ((Expr.Variable) target).name;
+            return new Expr.Assign(name, value);
+        } else if (target instanceof Expr.Get) {
+            var get = (Expr.Get) target;
+            return new Expr.Set(get.object, get.name, value);
         }
 
-        return expr;
+        // why don't we go try to synchronize here?
+        error(equals, "Invalid assignment target.");
+        return target;
     }
 
-    private Expr term() {
-        Expr expr = factor();
-
-        while (match(MINUS, PLUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
+    private Expr logical(Expr left) {
+        Token operator = previous();
+        Expr right = expression(PRECEDENCES[operator.type.ordinal()]);
+        return new Expr.Logical(left, operator, right);
     }
 
-    private Expr factor() {
-        Expr expr = unary();
-
-        while (match(SLASH, STAR)) {
-            Token operator = previous();
-            Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
+    private Expr binary(Expr left) {
+        Token operator = previous();
+        Expr right = expression(PRECEDENCES[operator.type.ordinal()]);
+        return new Expr.Binary(left, operator, right);
     }
 
     private Expr unary() {
-        if (match(BANG, MINUS)) {
-            Token operator = previous();
-            Expr right = unary();
-            return new Expr.Unary(operator, right);
-        }
-
-        return call();
+        Token operator = previous();
+        Expr right = expression(Precedence.UNARY);
+        return new Expr.Unary(operator, right);
     }
 
-    private Expr call() {
-        Expr expr = primary();
-
-        while (true) {
-            if (match(LEFT_PAREN)) {
-                expr = finishCall(expr);
-            } else if(match(DOT)) {
-                Token name = consume(IDENTIFIER, "Expected identifier after '.'.");
-                expr = new Expr.Get(expr, name);
-            } else {
-                break;
-            }
-        }
-
-        return expr;
-    }
-
-    private Expr finishCall(Expr callee) {
+    private Expr call(Expr callee) {
         List<Expr> arguments = new ArrayList<>();
         if (!check(RIGHT_PAREN)) {
             do {
@@ -371,41 +369,47 @@ public class Parser {
         return new Expr.Call(callee, paren, arguments);
     }
 
-    private Expr primary() {
-        if (match(FALSE)) {
-            return new Expr.Literal(false);
-        }
-        if (match(TRUE)) {
-            return new Expr.Literal(true);
-        }
-        if (match(NIL)) {
-            return new Expr.Literal(null);
-        }
-
-        if (match(TokenType.NUMBER, TokenType.STRING)) {
-            return new Expr.Literal(previous().literal);
-        }
+    private Expr get(Expr object) {
+        Token name = consume(IDENTIFIER, "Expected identifier after '.'.");
+        return new Expr.Get(object, name);
+    }
 
-        if (match(THIS)) {
-            return new Expr.This(previous());
+    private Expr literal() {
+        switch (tokens.previousType()) {
+            case FALSE:
+                return new Expr.Literal(false);
+            case TRUE:
+                return new Expr.Literal(true);
+            case NIL:
+                return new Expr.Literal(null);
+            default:
+                return new Expr.Literal(tokens.previousLiteral());
         }
+    }
 
-        if (match(IDENTIFIER)) {
-            return new Expr.Variable(previous());
-        }
+    private Expr self() {
+        return new Expr.This(previous());
+    }
 
-        if (match(LEFT_PAREN)) {
-            Expr expr = expression();
-            consume(RIGHT_PAREN, "expect ')' after expression.");
-            return new Expr.Grouping(expr);
-        }
+    private Expr variable() {
+        return new Expr.Variable(previous());
+    }
 
-        throw error(peek(), "Expect expression.");
+    private Expr grouping() {
+        Expr expr = expression();
+        expect(RIGHT_PAREN, "expect ')' after expression.");
+        return new Expr.Grouping(expr);
     }
 
     private Token consume(TokenType token, String message) {
+        expect(token, message);
+        return previous();
+    }
+
+    private void expect(TokenType token, String message) {
         if (check(token)) {
-            return advance();
+            advance();
+            return;
         }
 
         throw error(peek(), message);
@@ -421,11 +425,12 @@ public class Parser {
 
         while (!isAtEnd()) {
             // if we just passed a semicolon, we should be at the start of the next statement
-            if (previous().type == SEMICOLON) return;
+            if (tokens.previousType() == SEMICOLON) return;
 
             // these indicate the start of a statement
-            switch (peek().type) {
+            switch (tokens.peekType()) {
                 case CLASS:
+                case IMPORT:
                 case FUN:
                 case VAR:
                 case FOR:
@@ -450,29 +455,70 @@ public class Parser {
         return false;
     }
 
-    private Token advance() {
+    private void advance() {
         if (!isAtEnd()) {
-            current++;
+            tokens.next();
         }
-        return previous();
     }
 
     private boolean check(TokenType type) {
         if (isAtEnd()) {
             return false;
         }
-        return type.equals(peek().type);
+        return type == tokens.peekType();
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.peek();
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.previous();
     }
 
     private boolean isAtEnd() {
-        return EOF.equals(peek().type);
+        return tokens.peekType() == EOF;
+    }
+
+    /**
+     * Tokens that have already been created, as in the parser tests.
+     */
+    private static class ListTokens implements TokenStream {
+        private final List<Token> tokens;
+        private int current = -1;
+
+        ListTokens(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public void next() {
+            current++;
+        }
+
+        @Override
+        public TokenType peekType() {
+            return peek().type;
+        }
+
+        @Override
+        public TokenType previousType() {
+            return previous().type;
+        }
+
+        @Override
+        public Token peek() {
+            return tokens.get(current);
+        }
+
+        @Override
+        public Token previous() {
+            return tokens.get(current - 1);
+        }
+
+        @Override
+        public Object previousLiteral() {
+            return previous().literal;
+        }
     }
 }
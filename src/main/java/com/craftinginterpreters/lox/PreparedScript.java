@@ -0,0 +1,92 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A script that has been scanned, parsed and resolved once and can be executed any number of times.
+ * <p>
+ * Instances are immutable: the syntax tree is never modified after parsing and the resolution results
+ * are kept next to it instead of inside an interpreter, so one prepared script can be shared between
+ * interpreters running on different threads.
+ */
+final class PreparedScript {
+
+    final List<Stmt> statements;
+    final Map<Expr, Integer> locals;
+    // how long the front-end took, zero for scripts read from the parse cache
+    final long parseNanos;
+    final long resolveNanos;
+
+    PreparedScript(List<Stmt> statements, Map<Expr, Integer> locals) {
+        this(statements, locals, 0, 0);
+    }
+
+    PreparedScript(List<Stmt> statements, Map<Expr, Integer> locals, long parseNanos, long resolveNanos) {
+        this.statements = List.copyOf(statements);
+        this.locals = Map.copyOf(locals);
+        this.parseNanos = parseNanos;
+        this.resolveNanos = resolveNanos;
+    }
+
+    /**
+     * Runs the front-end over the source. Errors are reported through {@link Lox#error}, in which
+     * case {@code null} is returned.
+     */
+    static PreparedScript prepare(CharSequence source) {
+        int errors = Lox.errorCount();
+
+        var parse = new LoxEvents.Phase();
+        parse.begin();
+        long start = System.nanoTime();
+        var statements = Lox.parse(source);
+        long parsed = System.nanoTime();
+        parse.end();
+        if (parse.shouldCommit()) {
+            parse.phase = "parse";
+            parse.statements = statements.size();
+            parse.commit();
+        }
+        if (Lox.errorCount() != errors) {
+            // stop if there was a syntax error
+            return null;
+        }
+
+        var resolve = new LoxEvents.Phase();
+        resolve.begin();
+        Map<Expr, Integer> locals = new HashMap<>();
+        new Resolver(locals).resolve(statements);
+        long resolved = System.nanoTime();
+        resolve.end();
+        if (resolve.shouldCommit()) {
+            resolve.phase = "resolve";
+            resolve.statements = statements.size();
+            resolve.commit();
+        }
+        if (Lox.errorCount() != errors) {
+            // stop if there's a resolution error
+            return null;
+        }
+
+        return new PreparedScript(statements, locals, parsed - start, resolved - parsed);
+    }
+
+    /**
+     * Executes the script in an existing interpreter, on top of whatever its globals already hold.
+     */
+    void execute(Interpreter interpreter) {
+        interpreter.interpret(this);
+    }
+
+    /**
+     * Executes the script in a fresh interpreter whose globals are seeded with the given values.
+     * The interpreter is returned so that the caller can read back the globals the script has set.
+     */
+    Interpreter execute(Map<String, Object> globals) {
+        var interpreter = new Interpreter();
+        globals.forEach(interpreter.globals::define);
+        interpreter.interpret(this);
+        return interpreter;
+    }
+}
@@ -0,0 +1,169 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how often each Lox function, class and native function is called and where the time goes.
+ * <p>
+ * Every call made by Lox code passes {@link #call} when the interpreter has a profiler, which keeps a stack
+ * of the calls in progress. When a call returns, its inclusive time is added to its function, the time not
+ * spent in nested calls is added as self time, and the same self time is added to a tree of call paths that
+ * is written out as collapsed stacks for flame-graph tools. Bytes allocated by the thread are tracked the same
+ * way where the JVM supports it. Recursive calls only count towards a function's total time at the outermost
+ * level, so totals never exceed the run time.
+ */
+class Profiler {
+
+    private static class Function {
+        final String name;
+        long calls = 0;
+        long selfTime = 0;
+        long totalTime = 0;
+        long allocated = 0;
+        // calls of this function currently on the stack
+        int active = 0;
+
+        Function(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class CallPath {
+        final Function function;
+        final Map<Function, CallPath> children = new HashMap<>();
+        long selfTime = 0;
+
+        CallPath(Function function) {
+            this.function = function;
+        }
+    }
+
+    private static class Call {
+        final CallPath path;
+        final long start;
+        final long startAllocated;
+        long childTime = 0;
+        long childAllocated = 0;
+
+        Call(CallPath path, long start, long startAllocated) {
+            this.path = path;
+            this.start = start;
+            this.startAllocated = startAllocated;
+        }
+    }
+
+    private record FlatDeclaration(FlatAst ast, int node) {
+    }
+
+    private final Map<Object, Function> functions = new HashMap<>();
+    private final CallPath root = new CallPath(new Function("<script>"));
+    private final List<Call> stack = new ArrayList<>();
+    private final com.sun.management.ThreadMXBean threads;
+    private final long started = System.nanoTime();
+
+    Profiler() {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()) {
+            sun.setThreadAllocatedMemoryEnabled(true);
+            threads = sun;
+        } else {
+            threads = null;
+        }
+        stack.add(new Call(root, started, allocated()));
+    }
+
+    Object call(Interpreter interpreter, LoxCallable callable, List<Object> arguments) {
+        Function function = function(callable);
+        Call caller = stack.get(stack.size() - 1);
+        Call call = new Call(caller.path.children.computeIfAbsent(function, CallPath::new), System.nanoTime(), allocated());
+        stack.add(call);
+        function.active++;
+        try {
+            return callable.call(interpreter, arguments);
+        } finally {
+            long time = System.nanoTime() - call.start;
+            long allocated = allocated() - call.startAllocated;
+            stack.remove(stack.size() - 1);
+            function.active--;
+
+            function.calls++;
+            function.selfTime += time - call.childTime;
+            function.allocated += allocated - call.childAllocated;
+            if (function.active == 0) {
+                function.totalTime += time;
+            }
+            call.path.selfTime += time - call.childTime;
+            caller.childTime += time;
+            caller.childAllocated += allocated;
+        }
+    }
+
+    private Function function(LoxCallable callable) {
+        // bound methods are new objects on every access, so functions are keyed by their declaration, and native
+        // functions, whose methods are too, by their name
+        Object key = callable;
+        if (callable instanceof LoxFunction function) {
+            key = function.declaration;
+        } else if (callable instanceof FlatFunction function) {
+            key = new FlatDeclaration(function.ast, function.declaration);
+        } else if (callable instanceof NativeFunction) {
+            key = callable.name();
+        }
+        return functions.computeIfAbsent(key, k -> new Function(callable instanceof NativeFunction
+                ? callable.name() + " (native)"
+                : callable.name() + ":" + callable.line()));
+    }
+
+    private long allocated() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Prints one line per function, slowest self time first.
+     */
+    void report(PrintStream out) {
+        long elapsed = System.nanoTime() - started;
+        List<Function> sorted = new ArrayList<>(functions.values());
+        sorted.sort(Comparator.comparingLong((Function function) -> function.selfTime).reversed());
+
+        out.printf("Profile of %.1f ms%n", elapsed / 1e6);
+        out.printf("%10s %10s %10s %12s  %s%n", "calls", "self ms", "total ms", "alloc KiB", "function");
+        for (Function function : sorted) {
+            out.printf("%10d %10.2f %10.2f %12d  %s%n", function.calls, function.selfTime / 1e6,
+                    function.totalTime / 1e6, function.allocated / 1024, function.name);
+        }
+    }
+
+    /**
+     * Writes the self time of every call path in microseconds, one line per path with the functions separated
+     * by semicolons, which is the input format of flamegraph.pl and most other flame-graph tools.
+     */
+    void writeCollapsedStacks(Path file) throws IOException {
+        // time in the script itself is whatever its calls did not take
+        root.selfTime = System.nanoTime() - started - stack.get(0).childTime;
+        try (var writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writeCollapsedStacks(writer, root, root.function.name);
+        }
+    }
+
+    private void writeCollapsedStacks(PrintWriter writer, CallPath path, String prefix) {
+        long micros = path.selfTime / 1000;
+        if (micros > 0) {
+            writer.println(prefix + " " + micros);
+        }
+        for (CallPath child : path.children.values()) {
+            writeCollapsedStacks(writer, child, prefix + ";" + child.function.name);
+        }
+    }
+}
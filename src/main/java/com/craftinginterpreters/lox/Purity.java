@@ -0,0 +1,258 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the top-level functions of a script whose result depends only on their arguments, so that calls to them
+ * can be answered from a cache.
+ * <p>
+ * A function is pure when its body only declares and assigns its own local variables, never prints, reads or
+ * writes properties, uses {@code this}, declares functions or classes, and calls or reads no other globals than
+ * pure functions. Those must be declared exactly once and never assigned anywhere in the script, so the name is
+ * known to refer to the same function for as long as the script runs. Scripts with imports are left alone, since
+ * a module may redefine any global, and the importer of a module or a later script may in turn redefine the
+ * module's functions, which {@link MemoizedFunction} notices at run time. Recursion is handled by assuming every candidate is pure and dropping the
+ * ones that call an impure function until nothing changes.
+ * <p>
+ * Every node is visited even after an impure one was found, because the first pass over the script also
+ * collects the global names that are declared or assigned.
+ */
+class Purity implements Expr.Visitor<Boolean>, Stmt.Visitor<Boolean> {
+
+    private final Deque<Set<String>> scopes = new ArrayDeque<>();
+    private final Map<String, Integer> declarations = new HashMap<>();
+    private final Set<String> assigned = new HashSet<>();
+    private final Map<String, Stmt.Function> functions = new HashMap<>();
+    private final Set<Stmt.Function> pure = new HashSet<>();
+    private boolean imports = false;
+
+    private Purity() {
+    }
+
+    static Set<Stmt.Function> analyze(List<Stmt> statements) {
+        var purity = new Purity();
+        for (Stmt statement : statements) {
+            statement.accept(purity);
+            if (statement instanceof Stmt.Function function) {
+                purity.functions.put(function.name.lexeme, function);
+            }
+        }
+        if (purity.imports) {
+            return Set.of();
+        }
+
+        for (var function : purity.functions.values()) {
+            String name = function.name.lexeme;
+            if (purity.declarations.get(name) == 1 && !purity.assigned.contains(name)) {
+                purity.pure.add(function);
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = purity.pure.removeIf(function -> !purity.isPure(function));
+        }
+        return purity.pure;
+    }
+
+    private boolean isPure(Stmt.Function function) {
+        beginScope(function.params);
+        boolean pure = all(function.body);
+        endScope();
+        return pure;
+    }
+
+    private void beginScope(List<Token> params) {
+        Set<String> scope = new HashSet<>();
+        for (Token param : params) {
+            scope.add(param.lexeme);
+        }
+        scopes.push(scope);
+    }
+
+    private void endScope() {
+        scopes.pop();
+    }
+
+    private void declare(Token name) {
+        if (scopes.isEmpty()) {
+            declarations.merge(name.lexeme, 1, Integer::sum);
+        } else {
+            scopes.peek().add(name.lexeme);
+        }
+    }
+
+    private boolean isLocal(Token name) {
+        for (Set<String> scope : scopes) {
+            if (scope.contains(name.lexeme)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean all(List<? extends Stmt> statements) {
+        boolean pure = true;
+        for (Stmt statement : statements) {
+            pure &= statement.accept(this);
+        }
+        return pure;
+    }
+
+    private boolean check(Expr expr) {
+        return expr == null || expr.accept(this);
+    }
+
+    private boolean check(Stmt stmt) {
+        return stmt == null || stmt.accept(this);
+    }
+
+    @Override
+    public Boolean visitBlockStmt(Stmt.Block stmt) {
+        beginScope(List.of());
+        boolean pure = all(stmt.statements);
+        endScope();
+        return pure;
+    }
+
+    @Override
+    public Boolean visitClassStmt(Stmt.Class stmt) {
+        declare(stmt.name);
+        all(stmt.methods);
+        return false;
+    }
+
+    @Override
+    public Boolean visitExpressionStmt(Stmt.Expression stmt) {
+        return check(stmt.expression);
+    }
+
+    @Override
+    public Boolean visitFunctionStmt(Stmt.Function stmt) {
+        // a nested function would capture the locals of this call, so only top-level ones are pure
+        declare(stmt.name);
+        isPure(stmt);
+        return false;
+    }
+
+    @Override
+    public Boolean visitIfStmt(Stmt.If stmt) {
+        return check(stmt.condition) & check(stmt.thenBranch) & check(stmt.elseBranch);
+    }
+
+    @Override
+    public Boolean visitImportStmt(Stmt.Import stmt) {
+        imports = true;
+        return false;
+    }
+
+    @Override
+    public Boolean visitPrintStmt(Stmt.Print stmt) {
+        check(stmt.expression);
+        return false;
+    }
+
+    @Override
+    public Boolean visitReturnStmt(Stmt.Return stmt) {
+        return check(stmt.value);
+    }
+
+    @Override
+    public Boolean visitVarStmt(Stmt.Var stmt) {
+        boolean pure = check(stmt.initializer);
+        declare(stmt.name);
+        return pure;
+    }
+
+    @Override
+    public Boolean visitWhileStmt(Stmt.While stmt) {
+        return check(stmt.condition) & check(stmt.body);
+    }
+
+    @Override
+    public Boolean visitAssignExpr(Expr.Assign expr) {
+        boolean pure = check(expr.value);
+        if (isLocal(expr.name)) {
+            return pure;
+        }
+        assigned.add(expr.name.lexeme);
+        return false;
+    }
+
+    @Override
+    public Boolean visitBinaryExpr(Expr.Binary expr) {
+        return check(expr.left) & check(expr.right);
+    }
+
+    @Override
+    public Boolean visitCallExpr(Expr.Call expr) {
+        boolean pure = check(expr.callee);
+        for (Expr argument : expr.arguments) {
+            pure &= check(argument);
+        }
+        // a local could hold any function, only a global name is known to refer to a pure one
+        return pure && expr.callee instanceof Expr.Variable callee && !isLocal(callee.name);
+    }
+
+    @Override
+    public Boolean visitGetExpr(Expr.Get expr) {
+        check(expr.object);
+        return false;
+    }
+
+    @Override
+    public Boolean visitGroupingExpr(Expr.Grouping expr) {
+        return check(expr.expression);
+    }
+
+    @Override
+    public Boolean visitLiteralExpr(Expr.Literal expr) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitLogicalExpr(Expr.Logical expr) {
+        return check(expr.left) & check(expr.right);
+    }
+
+    @Override
+    public Boolean visitSetExpr(Expr.Set expr) {
+        check(expr.object);
+        check(expr.value);
+        return false;
+    }
+
+    @Override
+    public Boolean visitThisExpr(Expr.This expr) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitUnaryExpr(Expr.Unary expr) {
+        return check(expr.right);
+    }
+
+    @Override
+    public Boolean visitVariableExpr(Expr.Variable expr) {
+        if (isLocal(expr.name)) {
+            return true;
+        }
+        Stmt.Function function = functions.get(expr.name.lexeme);
+        return function != null && pure.contains(function);
+    }
+
+    @Override
+    public Boolean visitSeriesExpr(Expr.Series expr) {
+        boolean pure = true;
+        for (Expr expression : expr.expressions) {
+            pure &= check(expression);
+        }
+        return pure;
+    }
+}
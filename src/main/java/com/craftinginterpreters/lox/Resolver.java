@@ -4,13 +4,25 @@ import java.util.*;
 
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
-    private final Interpreter interpreter;
-    private final LinkedList<Map<String, Boolean>> scopes = new LinkedList<>();
+    private final Map<Expr, Integer> locals;
+
+    // every name maps to its innermost active declaration, which links to the declarations it shadows
+    private final Map<String, Declaration> symbols = new HashMap<>();
+    // declarations of all open scopes in order, with the index where each scope's declarations start
+    private Declaration[] declarations = new Declaration[64];
+    private int declarationCount = 0;
+    private int[] scopeStarts = new int[16];
+    private int depth = 0;
+
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
 
     Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+        this(interpreter.locals);
+    }
+
+    Resolver(Map<Expr, Integer> locals) {
+        this.locals = locals;
     }
 
     @Override
@@ -95,7 +107,8 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private boolean isBeingInitialized(String name) {
-        return !scopes.isEmpty() && scopes.peek().get(name) == Boolean.FALSE;
+        Declaration declaration = symbols.get(name);
+        return declaration != null && declaration.scope == depth && !declaration.defined;
     }
 
     @Override
@@ -124,7 +137,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
 
         beginScope();
-        scopes.peek().put("this", true);
+        declare("this").defined = true;
 
         for (Stmt.Function method : stmt.methods) {
             FunctionType declaration = FunctionType.METHOD;
@@ -154,11 +167,23 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<>());
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = declarationCount;
     }
 
     private void endScope() {
-        scopes.pop();
+        int start = scopeStarts[--depth];
+        while (declarationCount > start) {
+            Declaration declaration = declarations[--declarationCount];
+            declarations[declarationCount] = null;
+            if (declaration.shadowed != null) {
+                symbols.put(declaration.name, declaration.shadowed);
+            } else {
+                symbols.remove(declaration.name);
+            }
+        }
     }
 
     @Override
@@ -201,6 +226,15 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        // a module runs in the global scope, so it is resolved on its own when it is loaded
+        if (depth > 0) {
+            Lox.error(stmt.keyword, "Can only import at the top level.");
+        }
+        return null;
+    }
+
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         resolve(stmt.expression);
@@ -233,28 +267,36 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private void declare(Token name) {
-        if (scopes.isEmpty()) return;
+        if (depth == 0) return;
 
-        var scope = scopes.peek();
-        if (scope.containsKey(name.lexeme)) {
+        Declaration existing = symbols.get(name.lexeme);
+        if (existing != null && existing.scope == depth) {
             Lox.error(name, String.format("Variable '%s' already exists in this scope.", name.lexeme));
         }
 
-        scope.put(name.lexeme, false);
+        declare(name.lexeme);
+    }
+
+    private Declaration declare(String name) {
+        var declaration = new Declaration(name, depth, symbols.get(name));
+        symbols.put(name, declaration);
+        if (declarationCount == declarations.length) {
+            declarations = Arrays.copyOf(declarations, declarationCount * 2);
+        }
+        declarations[declarationCount++] = declaration;
+        return declaration;
     }
 
     private void define(Token name) {
-        if (scopes.isEmpty()) return;
+        if (depth == 0) return;
 
-        scopes.peek().put(name.lexeme, true);
+        symbols.get(name.lexeme).defined = true;
     }
 
     private void resolveLocal(Expr expr, Token name) {
-        for (int i = 0; i < scopes.size(); i++) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, i);
-                return;
-            }
+        Declaration declaration = symbols.get(name.lexeme);
+        if (declaration != null) {
+            locals.put(expr, depth - declaration.scope);
         }
     }
 
@@ -265,6 +307,20 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    private static class Declaration {
+        final String name;
+        // the depth of the declaring scope, counting the outermost local scope as 1
+        final int scope;
+        final Declaration shadowed;
+        boolean defined = false;
+
+        Declaration(String name, int scope, Declaration shadowed) {
+            this.name = name;
+            this.scope = scope;
+            this.shadowed = shadowed;
+        }
+    }
+
     private enum FunctionType {
         NONE,
         FUNCTION,
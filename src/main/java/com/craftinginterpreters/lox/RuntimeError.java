@@ -8,4 +8,18 @@ public class RuntimeError extends RuntimeException {
         super(message);
         this.token = token;
     }
+
+    /**
+     * An error raised by a native function, which has no token of its own.
+     */
+    RuntimeError(String message) {
+        this(null, message);
+    }
+
+    /**
+     * Attributes an error raised by a native function to the call that ran it.
+     */
+    RuntimeError at(Token call) {
+        return token != null ? this : new RuntimeError(call, getMessage());
+    }
 }
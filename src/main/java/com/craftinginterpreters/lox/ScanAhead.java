@@ -0,0 +1,82 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Searches used by the {@link Scanner} to jump over whitespace, comments and string bodies in one go
+ * instead of advancing a character at a time.
+ * <p>
+ * This class is the scalar implementation. When the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, {@link #of} returns a {@link VectorScanAhead} that compares a
+ * whole SIMD register of characters per step; {@code -Dlox.vectorScan=false} turns it off again.
+ */
+class ScanAhead {
+
+    private static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !"false".equals(System.getProperty("lox.vectorScan"));
+
+    protected final CharSequence source;
+
+    ScanAhead(CharSequence source) {
+        this.source = source;
+    }
+
+    static ScanAhead of(CharSequence source) {
+        if (VECTOR_AVAILABLE) {
+            return VectorScanAhead.of(source);
+        }
+        return new ScanAhead(source);
+    }
+
+    /**
+     * Index of the first {@code c} at or after {@code from}, or the length of the source if there is none.
+     */
+    int indexOf(char c, int from) {
+        int i = from;
+        while (i < source.length() && source.charAt(i) != c) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Index of the first {@code a} or {@code b} at or after {@code from}, or the length of the source.
+     */
+    int indexOfAny(char a, char b, int from) {
+        int i = from;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == a || c == b) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Index of the first character at or after {@code from} that is not a space, tab or carriage return.
+     */
+    int skipBlanks(int from) {
+        int i = from;
+        while (i < source.length() && isBlank(source.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Number of occurrences of {@code c} between {@code from} (inclusive) and {@code to} (exclusive).
+     */
+    int count(char c, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
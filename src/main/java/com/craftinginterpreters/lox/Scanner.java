@@ -1,58 +1,144 @@
 package com.craftinginterpreters.lox;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 
 import static com.craftinginterpreters.lox.TokenType.*;
 
 public class Scanner {
-    private static final Map<String, TokenType> KEYWORDS;
+    // lexemes of the tokens whose text is always the same, so materializing them never copies the source
+    private static final String[] FIXED_LEXEMES = new String[TokenType.values().length];
 
     static {
-        KEYWORDS = new HashMap<>() {{
-            put("and", AND);
-            put("class", CLASS);
-            put("else", ELSE);
-            put("false", FALSE);
-            put("for", FOR);
-            put("fun", FUN);
-            put("if", IF);
-            put("nil", NIL);
-            put("or", OR);
-            put("print", PRINT);
-            put("return", RETURN);
-            put("super", SUPER);
-            put("this", THIS);
-            put("true", TRUE);
-            put("var", VAR);
-            put("while", WHILE);
-        }};
-
-    }
-
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+        String[][] lexemes = {
+                {"LEFT_PAREN", "("}, {"RIGHT_PAREN", ")"}, {"LEFT_BRACE", "{"}, {"RIGHT_BRACE", "}"},
+                {"COMMA", ","}, {"DOT", "."}, {"MINUS", "-"}, {"PLUS", "+"}, {"SEMICOLON", ";"}, {"SLASH", "/"},
+                {"STAR", "*"}, {"BANG", "!"}, {"BANG_EQUAL", "!="}, {"EQUAL", "="}, {"EQUAL_EQUAL", "=="},
+                {"GREATER", ">"}, {"GREATER_EQUAL", ">="}, {"LESS", "<"}, {"LESS_EQUAL", "<="}, {"EOF", ""}
+        };
+        for (String[] lexeme : lexemes) {
+            FIXED_LEXEMES[TokenType.valueOf(lexeme[0]).ordinal()] = lexeme[1];
+        }
+        for (TokenType keyword : List.of(AND, CLASS, ELSE, FALSE, FUN, FOR, IF, IMPORT, NIL, OR,
+                PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE)) {
+            FIXED_LEXEMES[keyword.ordinal()] = keyword.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final CharSequence source;
+    private final ScanAhead scan;
 
     private int start = 0;
     private int current = 0;
     private int line = 1;
 
-    public Scanner(String source) {
+    // the token found by the last call to scanNext()
+    private TokenType scanned = null;
+    private int scannedEnd = 0;
+    private int scannedLine = 0;
+
+    public Scanner(CharSequence source) {
+        this(source, ScanAhead.of(source));
+    }
+
+    Scanner(CharSequence source, ScanAhead scan) {
         this.source = source;
+        this.scan = scan;
     }
 
     public List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != TokenType.EOF);
+
+        return tokens;
+    }
+
+    /**
+     * Scans just far enough to produce the next token, so that a parser can pull tokens one at a time
+     * instead of holding a list of the whole file. Returns EOF tokens once the source is exhausted.
+     */
+    public Token nextToken() {
+        scanNext();
+        return token(source, scanned, start, scannedEnd, scannedLine);
+    }
+
+    /**
+     * Scans the whole source into a {@link TokenBuffer}, without creating any {@link Token} objects.
+     */
+    TokenBuffer scanTokenBuffer() {
+        var buffer = new TokenBuffer(source);
+        do {
+            scanNext();
+            buffer.add(scanned, start, scannedEnd - start, scannedLine);
+        } while (scanned != EOF);
+
+        return buffer;
+    }
+
+    /**
+     * Feeds tokens to a parser as it asks for them, so that the whole file never has to be held as tokens.
+     */
+    TokenStream tokenStream() {
+        return new Window();
+    }
+
+    /**
+     * Finds the next token, leaving its type, extent and line in the scanned fields. Once the source is
+     * exhausted it keeps finding EOF tokens.
+     */
+    private void scanNext() {
+        scanned = null;
         while (!isAtEnd()) {
             // we are at the beginning of the next lexeme
             start = current;
             scanToken();
+            if (scanned != null) {
+                return;
+            }
         }
 
-        tokens.add(new Token(TokenType.EOF, "", null, line));
+        start = current;
+        addToken(EOF);
+    }
+
+    static Token token(CharSequence source, TokenType type, int start, int end, int line) {
+        String lexeme = FIXED_LEXEMES[type.ordinal()];
+        if (lexeme == null) {
+            lexeme = source.subSequence(start, end).toString();
+        }
+        return new Token(type, lexeme, literal(source, type, start, end), line);
+    }
 
-        return tokens;
+    static Object literal(CharSequence source, TokenType type, int start, int end) {
+        if (type == NUMBER) {
+            return parseNumber(source, start, end);
+        }
+        if (type == STRING) {
+            // Trim the surrounding quotes.
+            return source.subSequence(start + 1, end - 1).toString();
+        }
+        return null;
+    }
+
+    private static double parseNumber(CharSequence source, int start, int end) {
+        // integers that fit into a double exactly are accumulated straight from the characters
+        if (end - start <= 15) {
+            long value = 0;
+            int i = start;
+            while (i < end && source.charAt(i) != '.') {
+                value = value * 10 + (source.charAt(i) - '0');
+                i++;
+            }
+            if (i == end) {
+                return value;
+            }
+        }
+        return Double.parseDouble(source.subSequence(start, end).toString());
     }
 
     private boolean isAtEnd() {
@@ -87,7 +173,7 @@ public class Scanner {
                     addToken(SLASH);
                 }
             }
-            case ' ', '\t', '\r' -> {}
+            case ' ', '\t', '\r' -> current = scan.skipBlanks(current);
             case '\n' -> line++;
             // string literals
             case '"' -> string();
@@ -107,7 +193,14 @@ public class Scanner {
         int level = 1;
 
         while (!isAtEnd() && level > 0) {
-            if (blockCommentStart()) {
+            // jump to the next character that may open or close a comment
+            int next = scan.indexOfAny('*', '/', current);
+            line += scan.count('\n', current, next);
+            current = next;
+
+            if (isAtEnd()) {
+                break;
+            } else if (blockCommentStart()) {
                 level++;
                 advance();
                 advance();
@@ -141,8 +234,60 @@ public class Scanner {
         while (isAlphaNumeric(peek())) {
             advance();
         }
-        String text = source.substring(start, current);
-        addToken(KEYWORDS.getOrDefault(text, IDENTIFIER));
+        addToken(keyword());
+    }
+
+    private TokenType keyword() {
+        switch (source.charAt(start)) {
+            case 'a': return checkKeyword("and", AND);
+            case 'c': return checkKeyword("class", CLASS);
+            case 'e': return checkKeyword("else", ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a': return checkKeyword("false", FALSE);
+                        case 'o': return checkKeyword("for", FOR);
+                        case 'u': return checkKeyword("fun", FUN);
+                    }
+                }
+                break;
+            case 'i':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'f': return checkKeyword("if", IF);
+                        case 'm': return checkKeyword("import", IMPORT);
+                    }
+                }
+                break;
+            case 'n': return checkKeyword("nil", NIL);
+            case 'o': return checkKeyword("or", OR);
+            case 'p': return checkKeyword("print", PRINT);
+            case 'r': return checkKeyword("return", RETURN);
+            case 's': return checkKeyword("super", SUPER);
+            case 't':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'h': return checkKeyword("this", THIS);
+                        case 'r': return checkKeyword("true", TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword("var", VAR);
+            case 'w': return checkKeyword("while", WHILE);
+        }
+        return IDENTIFIER;
+    }
+
+    private TokenType checkKeyword(String keyword, TokenType type) {
+        if (current - start != keyword.length()) {
+            return IDENTIFIER;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (source.charAt(start + i) != keyword.charAt(i)) {
+                return IDENTIFIER;
+            }
+        }
+        return type;
     }
 
     private boolean isAlphaNumeric(char c) {
@@ -164,16 +309,13 @@ public class Scanner {
             advance();
         }
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        addToken(NUMBER);
     }
 
     private void string() {
-        while (peek() != '"' && !isAtEnd()) {
-            if (peek() == '\n') {
-                line++;
-            }
-            advance();
-        }
+        int end = scan.indexOf('"', current);
+        line += scan.count('\n', current, end);
+        current = end;
 
         if (isAtEnd()) {
             Lox.error(line, "Unterminated string.");
@@ -183,15 +325,11 @@ public class Scanner {
         // The closing "
         advance();
 
-        // Trim the surrounding quotes.
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING, value);
+        addToken(STRING);
     }
 
     private void skipSingleLineComment() {
-        while (peek() != '\n' && !isAtEnd()) {
-            advance();
-        }
+        current = scan.indexOf('\n', current);
     }
 
     private char peek() {
@@ -230,11 +368,71 @@ public class Scanner {
     }
 
     private void addToken(TokenType tokenType) {
-        addToken(tokenType, null);
+        // the lexeme and literal are only extracted when somebody asks for the token
+        scanned = tokenType;
+        scannedEnd = current;
+        scannedLine = line;
     }
 
-    private void addToken(TokenType tokenType, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(tokenType, text, literal, line));
+    /**
+     * The previous and current token of the scan, kept as types and offsets until a {@link Token} is asked for.
+     */
+    private class Window implements TokenStream {
+        private TokenType previousType = null;
+        private int previousStart, previousEnd, previousLine;
+        private Token previousToken = null;
+        private TokenType currentType = null;
+        private int currentStart, currentEnd, currentLine;
+        private Token currentToken = null;
+
+        @Override
+        public void next() {
+            if (currentType == EOF) {
+                return;
+            }
+            previousType = currentType;
+            previousStart = currentStart;
+            previousEnd = currentEnd;
+            previousLine = currentLine;
+            previousToken = currentToken;
+
+            scanNext();
+            currentType = scanned;
+            currentStart = start;
+            currentEnd = scannedEnd;
+            currentLine = scannedLine;
+            currentToken = null;
+        }
+
+        @Override
+        public TokenType peekType() {
+            return currentType;
+        }
+
+        @Override
+        public TokenType previousType() {
+            return previousType;
+        }
+
+        @Override
+        public Token peek() {
+            if (currentToken == null) {
+                currentToken = token(source, currentType, currentStart, currentEnd, currentLine);
+            }
+            return currentToken;
+        }
+
+        @Override
+        public Token previous() {
+            if (previousToken == null) {
+                previousToken = token(source, previousType, previousStart, previousEnd, previousLine);
+            }
+            return previousToken;
+        }
+
+        @Override
+        public Object previousLiteral() {
+            return literal(source, previousType, previousStart, previousEnd);
+        }
     }
 }
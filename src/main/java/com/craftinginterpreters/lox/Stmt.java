@@ -10,6 +10,7 @@ abstract class Stmt {
         R visitExpressionStmt(Expression stmt);
         R visitFunctionStmt(Function stmt);
         R visitIfStmt(If stmt);
+        R visitImportStmt(Import stmt);
         R visitPrintStmt(Print stmt);
         R visitReturnStmt(Return stmt);
         R visitVarStmt(Var stmt);
@@ -85,8 +86,23 @@ abstract class Stmt {
         final Stmt thenBranch;
         final Stmt elseBranch;
     }
+    static class Import extends Stmt {
+        Import(Token keyword, Token path) {
+            this.keyword = keyword;
+            this.path = path;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitImportStmt(this);
+        }
+
+        final Token keyword;
+        final Token path;
+    }
     static class Print extends Stmt {
-        Print(Expr expression) {
+        Print(Token keyword, Expr expression) {
+            this.keyword = keyword;
             this.expression = expression;
         }
 
@@ -95,6 +111,7 @@ abstract class Stmt {
             return visitor.visitPrintStmt(this);
         }
 
+        final Token keyword;
         final Expr expression;
     }
     static class Return extends Stmt {
@@ -0,0 +1,108 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+/**
+ * Tokens stored as parallel primitive arrays of type, start offset, length and line instead of one
+ * {@link Token} object with its own lexeme string each.
+ * <p>
+ * The buffer keeps a reference to the source and only builds a {@link Token} when the parser asks for one,
+ * which in practice means for the names, operators and literals that end up in the syntax tree. Punctuation
+ * and keywords are never materialized at all.
+ */
+final class TokenBuffer implements TokenStream {
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final CharSequence source;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // read position when used as a TokenStream, along with the tokens materialized for it so far
+    private int current = -1;
+    private Token currentToken = null;
+    private Token previousToken = null;
+
+    TokenBuffer(CharSequence source) {
+        this.source = source;
+    }
+
+    void add(TokenType type, int start, int length, int line) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    TokenType type(int index) {
+        return TOKEN_TYPES[types[index]];
+    }
+
+    int line(int index) {
+        return lines[index];
+    }
+
+    Token token(int index) {
+        int start = starts[index];
+        return Scanner.token(source, type(index), start, start + lengths[index], lines[index]);
+    }
+
+    @Override
+    public void next() {
+        if (current + 1 < size) {
+            current++;
+            previousToken = currentToken;
+            currentToken = null;
+        }
+    }
+
+    @Override
+    public TokenType peekType() {
+        return type(current);
+    }
+
+    @Override
+    public TokenType previousType() {
+        return type(current - 1);
+    }
+
+    @Override
+    public Token peek() {
+        if (currentToken == null) {
+            currentToken = token(current);
+        }
+        return currentToken;
+    }
+
+    @Override
+    public Token previous() {
+        if (previousToken == null) {
+            previousToken = token(current - 1);
+        }
+        return previousToken;
+    }
+
+    @Override
+    public Object previousLiteral() {
+        int index = current - 1;
+        int start = starts[index];
+        return Scanner.literal(source, type(index), start, start + lengths[index]);
+    }
+}
@@ -0,0 +1,28 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * The parser's window onto a sequence of tokens: the current token and the one before it.
+ * <p>
+ * Implementations are free to create {@link Token} objects only when one is asked for, so code that just needs
+ * to know what kind of token it is looking at should use {@link #peekType()} and {@link #previousType()}.
+ */
+interface TokenStream {
+
+    /**
+     * Moves on to the next token. A new stream is positioned before its first token.
+     */
+    void next();
+
+    TokenType peekType();
+
+    TokenType previousType();
+
+    Token peek();
+
+    Token previous();
+
+    /**
+     * The literal value of the previous token, without creating the token itself.
+     */
+    Object previousLiteral();
+}
@@ -0,0 +1,185 @@
+package com.craftinginterpreters.lox;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+
+/**
+ * {@link ScanAhead} using the incubating Vector API. It must only be loaded when the
+ * {@code jdk.incubator.vector} module is present, which {@link ScanAhead#of} takes care of.
+ * <p>
+ * Memory-mapped ASCII sources are compared a byte per lane straight from the mapping, and decoded sources a char
+ * per lane straight from the array behind their buffer. Strings are copied into a {@code char[]} once, and any
+ * other source is left to the scalar searches. Each search first checks the next character
+ * with plain code, since most runs the scanner skips (a single space, a short string) are shorter than a
+ * vector, and falls back to scalar code for the tail that doesn't fill a whole vector.
+ */
+abstract class VectorScanAhead extends ScanAhead {
+
+    private VectorScanAhead(CharSequence source) {
+        super(source);
+    }
+
+    static ScanAhead of(CharSequence source) {
+        if (source instanceof MappedSource mapped) {
+            return new Bytes(mapped);
+        }
+        if (source instanceof CharBuffer buffer && buffer.hasArray()) {
+            return new Chars(buffer, buffer.array(), buffer.arrayOffset() + buffer.position());
+        }
+        if (source instanceof String string) {
+            return new Chars(string, string.toCharArray(), 0);
+        }
+        return new ScanAhead(source);
+    }
+
+    private static final class Chars extends VectorScanAhead {
+        private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+        private final char[] chars;
+        // where the source starts in the array, and where it ends
+        private final int offset;
+        private final int end;
+
+        Chars(CharSequence source, char[] chars, int offset) {
+            super(source);
+            this.chars = chars;
+            this.offset = offset;
+            this.end = offset + source.length();
+        }
+
+        private ShortVector load(int index) {
+            return ShortVector.fromCharArray(SPECIES, chars, index);
+        }
+
+        @Override
+        int indexOf(char c, int from) {
+            int i = offset + from;
+            if (i < end && chars[i] != c) {
+                for (i++; i + SPECIES.length() <= end; i += SPECIES.length()) {
+                    var found = load(i).eq((short) c);
+                    if (found.anyTrue()) {
+                        return i - offset + found.firstTrue();
+                    }
+                }
+            }
+            return super.indexOf(c, i - offset);
+        }
+
+        @Override
+        int indexOfAny(char a, char b, int from) {
+            int i = offset + from;
+            if (i < end && chars[i] != a && chars[i] != b) {
+                for (i++; i + SPECIES.length() <= end; i += SPECIES.length()) {
+                    var v = load(i);
+                    var found = v.eq((short) a).or(v.eq((short) b));
+                    if (found.anyTrue()) {
+                        return i - offset + found.firstTrue();
+                    }
+                }
+            }
+            return super.indexOfAny(a, b, i - offset);
+        }
+
+        @Override
+        int skipBlanks(int from) {
+            int i = offset + from;
+            if (i < end && isBlank(chars[i])) {
+                for (i++; i + SPECIES.length() <= end; i += SPECIES.length()) {
+                    var v = load(i);
+                    VectorMask<Short> blank = v.eq((short) ' ').or(v.eq((short) '\t')).or(v.eq((short) '\r'));
+                    if (!blank.allTrue()) {
+                        return i - offset + blank.not().firstTrue();
+                    }
+                }
+            }
+            return super.skipBlanks(i - offset);
+        }
+
+        @Override
+        int count(char c, int from, int to) {
+            int count = 0;
+            int i = offset + from;
+            for (; i + SPECIES.length() <= offset + to; i += SPECIES.length()) {
+                count += load(i).eq((short) c).trueCount();
+            }
+            return count + super.count(c, i - offset, to);
+        }
+    }
+
+    private static final class Bytes extends VectorScanAhead {
+        private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+        private final MemorySegment bytes;
+        private final long length;
+
+        Bytes(MappedSource source) {
+            super(source);
+            this.bytes = MemorySegment.ofBuffer(source.bytes());
+            this.length = bytes.byteSize();
+        }
+
+        private ByteVector load(long offset) {
+            return ByteVector.fromMemorySegment(SPECIES, bytes, offset, ByteOrder.nativeOrder());
+        }
+
+        @Override
+        int indexOf(char c, int from) {
+            int i = from;
+            if (i < length && source.charAt(i) != c) {
+                for (i++; i + SPECIES.length() <= length; i += SPECIES.length()) {
+                    var found = load(i).eq((byte) c);
+                    if (found.anyTrue()) {
+                        return i + found.firstTrue();
+                    }
+                }
+            }
+            return super.indexOf(c, i);
+        }
+
+        @Override
+        int indexOfAny(char a, char b, int from) {
+            int i = from;
+            if (i < length && source.charAt(i) != a && source.charAt(i) != b) {
+                for (i++; i + SPECIES.length() <= length; i += SPECIES.length()) {
+                    var v = load(i);
+                    var found = v.eq((byte) a).or(v.eq((byte) b));
+                    if (found.anyTrue()) {
+                        return i + found.firstTrue();
+                    }
+                }
+            }
+            return super.indexOfAny(a, b, i);
+        }
+
+        @Override
+        int skipBlanks(int from) {
+            int i = from;
+            if (i < length && isBlank(source.charAt(i))) {
+                for (i++; i + SPECIES.length() <= length; i += SPECIES.length()) {
+                    var v = load(i);
+                    VectorMask<Byte> blank = v.eq((byte) ' ').or(v.eq((byte) '\t')).or(v.eq((byte) '\r'));
+                    if (!blank.allTrue()) {
+                        return i + blank.not().firstTrue();
+                    }
+                }
+            }
+            return super.skipBlanks(i);
+        }
+
+        @Override
+        int count(char c, int from, int to) {
+            int count = 0;
+            int i = from;
+            for (; i + SPECIES.length() <= to; i += SPECIES.length()) {
+                count += load(i).eq((byte) c).trueCount();
+            }
+            return count + super.count(c, i, to);
+        }
+    }
+}
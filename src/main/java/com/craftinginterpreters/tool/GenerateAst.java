@@ -4,7 +4,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class GenerateAst {
 
@@ -16,7 +18,7 @@ public class GenerateAst {
 
         String outputDir = args[0];
 
-        defineAst(outputDir, "Expr", List.of(
+        List<String> exprTypes = List.of(
                 "Assign : Token name, Expr value",
                 "Binary : Expr left, Token operator, Expr right",
                 "Call : Expr callee, Token paren, List<Expr> arguments",
@@ -29,19 +31,24 @@ public class GenerateAst {
                 "Unary : Token operator, Expr right",
                 "Variable : Token name",
                 "Series : List<Expr> expressions"
-        ));
-
-        defineAst(outputDir, "Stmt", List.of(
+        );
+        List<String> stmtTypes = List.of(
                 "Block : List<Stmt> statements",
                 "Class : Token name, List<Stmt.Function> methods",
                 "Expression : Expr expression",
                 "Function : Token name, List<Token> params, List<Stmt> body",
                 "If : Expr condition, Stmt thenBranch, Stmt elseBranch",
-                "Print : Expr expression",
+                "Import : Token keyword, Token path",
+                "Print : Token keyword, Expr expression",
                 "Return : Token keyword, Expr value",
                 "Var : Token name, Expr initializer",
                 "While : Expr condition, Stmt body"
-        ));
+        );
+
+        defineAst(outputDir, "Expr", exprTypes);
+        defineAst(outputDir, "Stmt", stmtTypes);
+        // expressions the resolver records a scope distance for
+        defineArena(outputDir, "FlatAst", exprTypes, stmtTypes, List.of("Assign", "This", "Variable"));
     }
 
     private static void defineAst(String outputDir, String baseName, List<String> types) throws IOException {
@@ -71,6 +78,160 @@ public class GenerateAst {
         }
     }
 
+    /**
+     * Writes a flat representation of both trees: every node is a run of ints in one array, starting with its
+     * kind and line, followed by one int per field. Child nodes are stored as their index in the array, tokens
+     * as an index into a table of names, other values as an index into a table of constants, and lists as the
+     * index of a run holding their size and then their elements.
+     */
+    private static void defineArena(String outputDir, String className, List<String> exprTypes,
+                                    List<String> stmtTypes, List<String> resolved) throws IOException {
+        List<String> kinds = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for (String type : exprTypes) {
+            String name = type.split(":")[0].trim();
+            kinds.add(name + "Expr");
+            types.add(resolved.contains(name) ? type + ", int depth" : type);
+        }
+        for (String type : stmtTypes) {
+            kinds.add(type.split(":")[0].trim() + "Stmt");
+            types.add(type);
+        }
+
+        var path = Paths.get(outputDir, className + ".java");
+        try (var writer = new PrintWriter(path.toFile(), StandardCharsets.UTF_8)) {
+            writer.println("package com.craftinginterpreters.lox;");
+            writer.println();
+            writer.println("import java.util.Arrays;");
+            writer.println("import java.util.HashMap;");
+            writer.println("import java.util.Map;");
+            writer.println();
+            writer.println("final class " + className + " {");
+            writer.println("    // the index of a missing node, e.g. an if statement without an else branch");
+            writer.println("    static final int NULL = 0;");
+            writer.println("    // a variable the resolver left to the globals");
+            writer.println("    static final int GLOBAL = -1;");
+            writer.println();
+            writer.println("    static final int KIND = 0;");
+            writer.println("    static final int LINE = 1;");
+            writer.println();
+
+            for (int i = 0; i < kinds.size(); i++) {
+                writer.println("    static final int " + constantName(kinds.get(i)) + " = " + (i + 1) + ";");
+            }
+
+            for (int i = 0; i < kinds.size(); i++) {
+                writer.println();
+                String[] fields = types.get(i).split(":")[1].trim().split(", ");
+                for (int j = 0; j < fields.length; j++) {
+                    String field = fields[j].split(" ")[1];
+                    writer.println("    static final int " + constantName(kinds.get(i)) + "_" + constantName(field)
+                            + " = " + (j + 2) + ";");
+                }
+            }
+
+            writer.println();
+            writer.println("    // the list of top-level statements");
+            writer.println("    int statements = NULL;");
+            writer.println();
+            writer.println("    int[] nodes = new int[1024];");
+            writer.println("    String[] names = new String[64];");
+            writer.println("    TokenType[] nameTypes = new TokenType[64];");
+            writer.println("    Object[] constants = new Object[64];");
+            writer.println();
+            writer.println("    private int size = 1;");
+            writer.println("    private int nameCount = 0;");
+            writer.println("    private int constantCount = 0;");
+            writer.println("    private Map<String, Integer> nameIndex = new HashMap<>();");
+            writer.println("    private Map<Object, Integer> constantIndex = new HashMap<>();");
+
+            for (int i = 0; i < kinds.size(); i++) {
+                defineArenaNode(writer, kinds.get(i), types.get(i));
+            }
+
+            writer.println();
+            writer.println("    int list(int... elements) {");
+            writer.println("        int list = allocate(elements.length + 1);");
+            writer.println("        nodes[list] = elements.length;");
+            writer.println("        System.arraycopy(elements, 0, nodes, list + 1, elements.length);");
+            writer.println("        return list;");
+            writer.println("    }");
+            writer.println();
+            writer.println("    int name(Token token) {");
+            writer.println("        return nameIndex.computeIfAbsent(token.type.name() + ' ' + token.lexeme, key -> {");
+            writer.println("            if (nameCount == names.length) {");
+            writer.println("                names = Arrays.copyOf(names, nameCount * 2);");
+            writer.println("                nameTypes = Arrays.copyOf(nameTypes, nameCount * 2);");
+            writer.println("            }");
+            writer.println("            names[nameCount] = token.lexeme;");
+            writer.println("            nameTypes[nameCount] = token.type;");
+            writer.println("            return nameCount++;");
+            writer.println("        });");
+            writer.println("    }");
+            writer.println();
+            writer.println("    int constant(Object value) {");
+            writer.println("        return constantIndex.computeIfAbsent(value, key -> {");
+            writer.println("            if (constantCount == constants.length) {");
+            writer.println("                constants = Arrays.copyOf(constants, constantCount * 2);");
+            writer.println("            }");
+            writer.println("            constants[constantCount] = value;");
+            writer.println("            return constantCount++;");
+            writer.println("        });");
+            writer.println("    }");
+            writer.println();
+            writer.println("    // drops the spare capacity and the lookup tables once all nodes have been added");
+            writer.println("    void trim() {");
+            writer.println("        nodes = Arrays.copyOf(nodes, size);");
+            writer.println("        names = Arrays.copyOf(names, nameCount);");
+            writer.println("        nameTypes = Arrays.copyOf(nameTypes, nameCount);");
+            writer.println("        constants = Arrays.copyOf(constants, constantCount);");
+            writer.println("        nameIndex = null;");
+            writer.println("        constantIndex = null;");
+            writer.println("    }");
+            writer.println();
+            writer.println("    int size() {");
+            writer.println("        return size;");
+            writer.println("    }");
+            writer.println();
+            writer.println("    private int allocate(int length) {");
+            writer.println("        if (size + length > nodes.length) {");
+            writer.println("            nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, size + length));");
+            writer.println("        }");
+            writer.println("        int node = size;");
+            writer.println("        size += length;");
+            writer.println("        return node;");
+            writer.println("    }");
+            writer.println("}");
+        }
+    }
+
+    private static void defineArenaNode(PrintWriter writer, String kind, String type) {
+        String[] fields = type.split(":")[1].trim().split(", ");
+        List<String> parameters = new ArrayList<>();
+        parameters.add("int line");
+        for (String field : fields) {
+            parameters.add("int " + field.split(" ")[1]);
+        }
+
+        String constant = constantName(kind);
+        writer.println();
+        writer.println("    int " + Character.toLowerCase(kind.charAt(0)) + kind.substring(1)
+                + "(" + String.join(", ", parameters) + ") {");
+        writer.println("        int node = allocate(" + (fields.length + 2) + ");");
+        writer.println("        nodes[node + KIND] = " + constant + ";");
+        writer.println("        nodes[node + LINE] = line;");
+        for (String field : fields) {
+            String name = field.split(" ")[1];
+            writer.println("        nodes[node + " + constant + "_" + constantName(name) + "] = " + name + ";");
+        }
+        writer.println("        return node;");
+        writer.println("    }");
+    }
+
+    private static String constantName(String name) {
+        return name.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+    }
+
     private static void defineVisitor(PrintWriter writer, String baseName, List<String> types) {
         writer.println("    interface Visitor<R> {");
 
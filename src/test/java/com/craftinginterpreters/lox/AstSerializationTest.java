@@ -0,0 +1,90 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+public class AstSerializationTest {
+
+    private static final String SCRIPT = """
+            class Counter {
+              init(start) {
+                this.count = start;
+              }
+
+              increment() {
+                this.count = this.count + 1;
+                return this.count;
+              }
+            }
+
+            fun run(times) {
+              var counter = Counter(0.5);
+              var last = nil;
+              for (var i = 0; i < times; i = i + 1) {
+                last = counter.increment();
+              }
+              if (last > 2 and !false) {
+                return "done " + "counting";
+              }
+              return -last;
+            }
+
+            var output = run(input);
+            """;
+
+    @Test
+    void should_round_trip_resolved_tree() {
+        // given
+        var prepared = PreparedScript.prepare(SCRIPT);
+
+        // when
+        var decoded = AstReader.read(ByteBuffer.wrap(AstWriter.write(prepared)));
+
+        // then
+        Assertions.assertEquals(prepared.statements.size(), decoded.statements.size());
+        Assertions.assertEquals(prepared.locals.size(), decoded.locals.size());
+        Assertions.assertEquals("done counting", decoded.execute(Map.of("input", 3.0)).globals.get(name("output")));
+        Assertions.assertEquals(-1.5, decoded.execute(Map.of("input", 1.0)).globals.get(name("output")));
+    }
+
+    @Test
+    void should_preserve_token_lines() {
+        // given
+        var prepared = PreparedScript.prepare("var a = 1;\n\n\nvar b = 2;");
+
+        // when
+        var decoded = AstReader.read(ByteBuffer.wrap(AstWriter.write(prepared)));
+
+        // then
+        Assertions.assertEquals(1, ((Stmt.Var) decoded.statements.get(0)).name.line);
+        Assertions.assertEquals(4, ((Stmt.Var) decoded.statements.get(1)).name.line);
+    }
+
+    @Test
+    void should_reuse_cached_tree() throws Exception {
+        // given
+        Path directory = Files.createTempDirectory("lox-cache");
+        var cache = new ParseCache(directory);
+
+        // when
+        var cold = cache.prepare(SCRIPT);
+        var cached = cache.prepare(SCRIPT);
+
+        // then
+        Assertions.assertNotNull(cold);
+        Assertions.assertNotNull(cached);
+        try (var entries = Files.list(directory)) {
+            Assertions.assertEquals(1, entries.count());
+        }
+        Assertions.assertEquals("done counting", cached.execute(Map.of("input", 3.0)).globals.get(name("output")));
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 0);
+    }
+}
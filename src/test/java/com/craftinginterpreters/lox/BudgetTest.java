@@ -0,0 +1,170 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+public class BudgetTest {
+
+    @Test
+    void should_stop_endless_loop_at_deadline() {
+        // given
+        var script = """
+                var i = 0;
+                while (true) {
+                  i = i + 1;
+                }
+                """;
+
+        // when
+        String errors = run(script, new Budget.Limits(0, 50, 0));
+
+        // then
+        Assertions.assertEquals("Script exceeded its deadline of 50 ms.\n[line 3]\n", errors);
+    }
+
+    @Test
+    void should_stop_script_over_statement_budget() {
+        // given
+        var script = """
+                fun count(n) {
+                  var total = 0;
+                  for (var i = 0; i < n; i = i + 1) total = total + 1;
+                  return total;
+                }
+                count(10000);
+                """;
+
+        // when
+        String within = run(script, new Budget.Limits(100000, 0, 0));
+        String over = run(script, new Budget.Limits(5000, 0, 0));
+
+        // then
+        Assertions.assertEquals("", within);
+        Assertions.assertEquals("Script exceeded its budget of 5000 statements.\n[line 3]\n", over);
+    }
+
+    @Test
+    void should_stop_growing_strings_and_instances_over_allocation_budget() {
+        // given
+        var strings = """
+                var text = "abcd";
+                for (var i = 0; i < 40; i = i + 1) {
+                  text = text + text;
+                }
+                """;
+        var instances = """
+                class Node {}
+                var list = nil;
+                for (var i = 0; i < 10000000; i = i + 1) {
+                  var node = Node();
+                  node.next = list;
+                  list = node;
+                }
+                """;
+
+        // when
+        String stringErrors = run(strings, new Budget.Limits(0, 0, 1_000_000));
+        String instanceErrors = run(instances, new Budget.Limits(0, 0, 1_000_000));
+
+        // then
+        Assertions.assertEquals("Script exceeded its allocation budget of 1000000 bytes.\n[line 3]\n", stringErrors);
+        Assertions.assertEquals("Script exceeded its allocation budget of 1000000 bytes.\n[line 3]\n", instanceErrors);
+    }
+
+    @Test
+    void should_stop_growing_lists_and_maps_over_allocation_budget() {
+        // given
+        var list = """
+                var list = List();
+                while (list.length() < 10000000) list.add(0);
+                """;
+        var map = """
+                var map = Map();
+                while (map.size() < 10000000) map.put(map.size(), true);
+                """;
+
+        // when
+        String listErrors = run(list, new Budget.Limits(0, 0, 1_000_000));
+        String mapErrors = run(map, new Budget.Limits(0, 0, 1_000_000));
+
+        // then
+        Assertions.assertEquals("Script exceeded its allocation budget of 1000000 bytes.\n[line 2]\n", listErrors);
+        Assertions.assertEquals("Script exceeded its allocation budget of 1000000 bytes.\n[line 2]\n", mapErrors);
+    }
+
+    @Test
+    void should_start_deadline_when_script_starts_executing() throws InterruptedException {
+        // given
+        var interpreter = Lox.interpreterFactory(false, false, new Budget.Limits(0, 50, 0)).get();
+        Thread.sleep(100);
+
+        // when
+        String errors = run(interpreter, """
+                var total = 0;
+                for (var i = 0; i < 5000; i = i + 1) total = total + i;
+                """);
+
+        // then
+        Assertions.assertEquals("", errors);
+    }
+
+    @Test
+    void should_stop_waiting_on_channels_at_deadline() {
+        // given
+        var receive = """
+                var channel = Channel(1);
+                channel.receive();
+                """;
+        var select = """
+                var channels = List();
+                channels.add(Channel(1));
+                select(channels);
+                """;
+
+        // when
+        String receiveErrors = run(receive, new Budget.Limits(0, 50, 0));
+        String selectErrors = run(select, new Budget.Limits(0, 50, 0));
+
+        // then
+        Assertions.assertEquals("Script exceeded its deadline of 50 ms.\n[line 2]\n", receiveErrors);
+        Assertions.assertEquals("Script exceeded its deadline of 50 ms.\n[line 3]\n", selectErrors);
+    }
+
+    @Test
+    void should_stop_parallel_calls_over_statement_budget() {
+        // given
+        var script = """
+                fun work(i) {
+                  var total = 0;
+                  for (var j = 0; j < 100; j = j + 1) total = total + j;
+                }
+                parallel_for(0, 10000, work);
+                """;
+
+        // when
+        String errors = run(script, new Budget.Limits(100000, 0, 0));
+
+        // then
+        Assertions.assertTrue(errors.startsWith("At index "), errors);
+        Assertions.assertTrue(errors.endsWith(": Script exceeded its budget of 100000 statements.\n[line 3]\n"), errors);
+    }
+
+    private static String run(String script, Budget.Limits limits) {
+        var interpreter = new Interpreter();
+        interpreter.limits = limits;
+        return run(interpreter, script);
+    }
+
+    private static String run(Interpreter interpreter, String script) {
+        var errors = new ByteArrayOutputStream();
+        Lox.reportingTo(new PrintStream(errors, true, StandardCharsets.UTF_8), () -> {
+            PreparedScript.prepare(script).execute(interpreter);
+            return null;
+        });
+        return errors.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,85 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class FlatAstTest {
+
+    private static final String SCRIPT = """
+            class Counter {
+              init(start) {
+                this.count = start;
+              }
+
+              add(amount) {
+                this.count = this.count + amount;
+                return this;
+              }
+            }
+
+            fun makeAdder(n) {
+              fun add(x) {
+                return x + n;
+              }
+              return add;
+            }
+
+            var counter = Counter(1).add(2).add(3);
+            var addTen = makeAdder(10);
+            var total = 0;
+            for (var i = 0; i < 5; i = i + 1) {
+              total = total + addTen((i - 1) * 2);
+            }
+            var label = total > 50 and "big" or "small";
+            """;
+
+    @Test
+    void should_compute_same_globals_as_tree() {
+        // given
+        var prepared = PreparedScript.prepare(SCRIPT);
+        var tree = new Interpreter();
+        var flat = new FlatInterpreter();
+
+        // when
+        prepared.execute(tree);
+        prepared.execute(flat);
+
+        // then
+        for (String name : new String[]{"total", "label"}) {
+            Assertions.assertEquals(tree.globals.get(name(name)), flat.globals.get(name(name)));
+        }
+        Assertions.assertEquals(60.0, flat.globals.get(name("total")));
+        var counter = (LoxInstance) flat.globals.get(name("counter"));
+        Assertions.assertEquals(6.0, counter.get(name("count")));
+    }
+
+    @Test
+    void should_share_names_and_constants() {
+        // given
+        var prepared = PreparedScript.prepare("var a = 1; a = a + 1; a = a + 1;");
+
+        // when
+        var ast = FlatAstBuilder.build(prepared);
+
+        // then
+        Assertions.assertEquals(2, ast.names.length); // a and +
+        Assertions.assertEquals(1, ast.constants.length);
+        Assertions.assertEquals(3, ast.nodes[ast.statements]);
+    }
+
+    @Test
+    void should_report_runtime_error_line() {
+        // given
+        var prepared = PreparedScript.prepare("var a = 1;\nvar b = a + \"x\";");
+
+        // when
+        prepared.execute(new FlatInterpreter());
+
+        // then
+        Assertions.assertTrue(Lox.hadRuntimeError);
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+
+public class InterpreterStatsTest {
+
+    private static final String SCRIPT = """
+            class Box {
+              init(value) {
+                this.value = value;
+              }
+
+              get() {
+                return this.value;
+              }
+            }
+
+            fun twice(x) {
+              return x + x;
+            }
+
+            var box = Box(2);
+            var result = twice(box.get());
+            var time = clock();
+            """;
+
+    @Test
+    void should_count_calls_and_allocations() {
+        // given
+        var interpreter = new Interpreter();
+
+        // when
+        PreparedScript.prepare(SCRIPT).execute(interpreter);
+
+        // then
+        var stats = interpreter.stats;
+        Assertions.assertEquals(1, stats.getConstructorCalls());
+        Assertions.assertEquals(3, stats.getFunctionCalls()); // init, get and twice
+        Assertions.assertEquals(1, stats.getNativeCalls());
+        Assertions.assertEquals(1, stats.getInstancesCreated());
+        Assertions.assertEquals(2, stats.getBoundMethodsCreated());
+        Assertions.assertEquals(0, stats.getCallDepth());
+        Assertions.assertEquals(1, stats.getScriptsExecuted());
+        Assertions.assertTrue(stats.getStatementsExecuted() >= 8);
+        Assertions.assertTrue(stats.getParseTimeNanos() > 0);
+    }
+
+    @Test
+    void should_count_runtime_errors_in_flat_interpreter() {
+        // given
+        var interpreter = new FlatInterpreter();
+
+        // when
+        PreparedScript.prepare("var a = -\"a\";").execute(interpreter);
+
+        // then
+        Assertions.assertEquals(1, interpreter.stats.getRuntimeErrors());
+    }
+
+    @Test
+    void should_expose_counters_as_mbean() throws JMException {
+        // given
+        var interpreter = new Interpreter();
+        PreparedScript.prepare(SCRIPT).execute(interpreter);
+
+        // when
+        var name = interpreter.stats.register();
+
+        // then
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            Assertions.assertEquals(1L, server.getAttribute(name, "ConstructorCalls"));
+            Assertions.assertEquals(interpreter.stats.getEnvironmentsCreated(), server.getAttribute(name, "EnvironmentsCreated"));
+        } finally {
+            interpreter.stats.unregister();
+        }
+    }
+
+    @Test
+    void should_register_isolated_runs_while_they_last() throws Exception {
+        // given
+        var script = Files.createTempFile("stats", ".lox");
+        Files.writeString(script, "read_line();");
+        var input = new PipedWriter();
+        var interpreter = new Interpreter();
+        interpreter.in = new BufferedReader(new PipedReader(input));
+        var name = new ObjectName("com.craftinginterpreters.lox:type=Interpreter,id=" + interpreter.stats.id);
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var err = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+
+        // when
+        var run = CompletableFuture.supplyAsync(() -> Lox.runIsolated(interpreter, script, err));
+        while (!server.isRegistered(name)) {
+            Thread.sleep(10);
+        }
+        input.close();
+        int status = run.get();
+        Files.delete(script);
+
+        // then
+        Assertions.assertEquals(0, status);
+        Assertions.assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,88 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class LineProfileTest {
+
+    private static final String SCRIPT = """
+            var total = 0;
+            for (var i = 0; i < 10; i = i + 1) {
+              total = total + i;
+            }
+            fun half(x) {
+              return x / 2;
+            }
+            var result = half(total);
+            """;
+
+    @Test
+    void should_count_executions_per_line() {
+        // given
+        var lines = new LineProfile();
+        var interpreter = new LineCountingInterpreter(lines);
+
+        // when
+        PreparedScript.prepare(SCRIPT).execute(interpreter);
+
+        // then
+        Assertions.assertEquals(1, lines.count(1));
+        Assertions.assertEquals(10, lines.count(3));
+        Assertions.assertEquals(1, lines.count(5));
+        Assertions.assertEquals(1, lines.count(6));
+        Assertions.assertEquals(1, lines.count(8));
+        Assertions.assertEquals(0, lines.count(4));
+    }
+
+    @Test
+    void should_count_prints_and_spawned_tasks_on_their_own_lines() {
+        // given
+        var lines = new LineProfile();
+        var interpreter = new LineCountingInterpreter(lines);
+        interpreter.out = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+
+        // when
+        PreparedScript.prepare("""
+                var x = 1;
+                print 2;
+                fun work() {
+                  return 3;
+                }
+                await(spawn(work));
+                """).execute(interpreter);
+
+        // then
+        Assertions.assertEquals(1, lines.count(1));
+        Assertions.assertEquals(1, lines.count(2));
+        Assertions.assertEquals(1, lines.count(4));
+    }
+
+    @Test
+    void should_write_annotated_listing_and_counts() throws IOException {
+        // given
+        var lines = new LineProfile();
+        PreparedScript.prepare(SCRIPT).execute(new LineCountingInterpreter(lines));
+        var file = Files.createTempFile("lines", ".tsv");
+        var content = new ByteArrayOutputStream();
+
+        // when
+        lines.report(SCRIPT, new PrintStream(content, true, StandardCharsets.UTF_8));
+        lines.write(file);
+
+        // then
+        var listing = content.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(listing.contains("        10 |   total = total + i;"), listing);
+        Assertions.assertTrue(listing.contains("Hottest lines:"), listing);
+        var written = Files.readAllLines(file);
+        Files.delete(file);
+        Assertions.assertEquals("line\tcount\tsamples", written.get(0));
+        Assertions.assertTrue(written.containsAll(List.of("1\t1\t0", "3\t10\t0")), written.toString());
+    }
+}
@@ -0,0 +1,40 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class LoxBatchTest {
+
+    @Test
+    void should_run_scripts_of_directory_in_isolation() throws Exception {
+        // given
+        Path scripts = Files.createTempDirectory("lox-batch");
+        Files.createDirectories(scripts.resolve("reports"));
+        for (int i = 0; i < 8; i++) {
+            Files.writeString(scripts.resolve("reports/report" + i + ".lox"), """
+                    var total;
+                    if (total == nil) total = 0;
+                    for (var i = 0; i < 1000; i = i + 1) total = total + 1;
+                    print total;
+                    """);
+        }
+        Files.writeString(scripts.resolve("broken.lox"), "print nil + 1;");
+        Path output = scripts.resolve("output");
+
+        // when
+        int status = new LoxBatch(Interpreter::new, 4, output).run(List.of(scripts));
+
+        // then
+        Assertions.assertEquals(70, status);
+        for (int i = 0; i < 8; i++) {
+            Assertions.assertEquals("1000\n", Files.readString(output.resolve("reports_report" + i + ".out")));
+            Assertions.assertEquals("", Files.readString(output.resolve("reports_report" + i + ".err")));
+        }
+        Assertions.assertEquals("Operands must be two numbers or two strings.\n[line 1]\n",
+                Files.readString(output.resolve("broken.err")));
+    }
+}
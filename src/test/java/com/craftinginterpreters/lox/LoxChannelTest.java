@@ -0,0 +1,106 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class LoxChannelTest {
+
+    @Test
+    void should_pass_values_through_a_pipeline_of_tasks() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                var numbers = Channel(1);
+                var squares = Channel(4);
+
+                fun produce() {
+                  for (var i = 1; i <= 1000; i = i + 1) numbers.send(i);
+                  numbers.close();
+                }
+
+                fun square() {
+                  var n = numbers.receive();
+                  while (n != nil) {
+                    squares.send(n * n);
+                    n = numbers.receive();
+                  }
+                  squares.close();
+                }
+
+                spawn(produce);
+                spawn(square);
+                var total = 0;
+                var square = squares.receive();
+                while (square != nil) {
+                  total = total + square;
+                  square = squares.receive();
+                }
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertEquals(333833500.0, interpreter.globals.get(name("total")));
+    }
+
+    @Test
+    void should_drain_closed_channel_and_refuse_sends() {
+        // given
+        var channel = new LoxChannel(2);
+        channel.send("a");
+        channel.send(null);
+
+        // when
+        channel.close();
+
+        // then
+        Assertions.assertEquals("a", channel.receive());
+        Assertions.assertNull(channel.receive());
+        Assertions.assertNull(channel.receive());
+        Assertions.assertThrows(RuntimeError.class, () -> channel.send("b"));
+    }
+
+    @Test
+    void should_select_from_every_channel_until_all_are_closed() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                var left = Channel(1);
+                var right = Channel(1);
+
+                fun sender(channel, count) {
+                  fun send() {
+                    for (var i = 0; i < count; i = i + 1) channel.send(i);
+                    channel.close();
+                  }
+                  return send;
+                }
+
+                spawn(sender(left, 30));
+                spawn(sender(right, 20));
+                var channels = List();
+                channels.add(left);
+                channels.add(right);
+                var fromLeft = 0;
+                var fromRight = 0;
+                var selected = select(channels);
+                while (selected != nil) {
+                  if (selected.get(0) == left) fromLeft = fromLeft + 1;
+                  else fromRight = fromRight + 1;
+                  selected = select(channels);
+                }
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertEquals(30.0, interpreter.globals.get(name("fromLeft")));
+        Assertions.assertEquals(20.0, interpreter.globals.get(name("fromRight")));
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 1);
+    }
+}
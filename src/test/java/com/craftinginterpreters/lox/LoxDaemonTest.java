@@ -0,0 +1,158 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class LoxDaemonTest {
+
+    private static Path directory;
+    private static Path socket;
+
+    @BeforeAll
+    static void startDaemon() throws Exception {
+        directory = Files.createTempDirectory("lox-daemon");
+        socket = directory.resolve("jlox.sock");
+        var daemon = new Thread(() -> {
+            try {
+                new LoxDaemon(Interpreter::new).serve(socket);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        daemon.setDaemon(true);
+        daemon.start();
+        // the socket file appears just before the daemon listens on it
+        while (true) {
+            try (var probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                probe.connect(UnixDomainSocketAddress.of(socket));
+                break;
+            } catch (IOException e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    void should_run_script_with_arguments_and_input() throws Exception {
+        // given
+        Files.writeString(directory.resolve("echo.lox"), """
+                print args.get(0);
+                var line = read_line();
+                while (line != nil) {
+                  print line + "!";
+                  line = read_line();
+                }
+                """);
+
+        // when
+        var run = run("echo.lox", "first", "one\ntwo\n");
+
+        // then
+        Assertions.assertEquals("first\none!\ntwo!\n", run.out);
+        Assertions.assertEquals("", run.err);
+        Assertions.assertEquals(0, run.status);
+    }
+
+    @Test
+    void should_report_errors_with_exit_codes_of_run_file() throws Exception {
+        // given
+        Files.writeString(directory.resolve("syntax.lox"), "print ;");
+        Files.writeString(directory.resolve("runtime.lox"), "print 1;\nprint nil + 1;");
+
+        // when
+        var syntax = run("syntax.lox", null, "");
+        var runtime = run("runtime.lox", null, "");
+
+        // then
+        Assertions.assertEquals(65, syntax.status);
+        Assertions.assertEquals("[line 1] Error at ';': Expect expression.\n", syntax.err);
+        Assertions.assertEquals(70, runtime.status);
+        Assertions.assertEquals("1\n", runtime.out);
+        Assertions.assertEquals("Operands must be two numbers or two strings.\n[line 2]\n", runtime.err);
+    }
+
+    @Test
+    void should_keep_globals_of_runs_apart() throws Exception {
+        // given
+        Files.writeString(directory.resolve("counter.lox"), """
+                var count;
+                if (count == nil) count = 0;
+                count = count + 1;
+                print count;
+                """);
+
+        // when
+        var first = run("counter.lox", null, "");
+        var second = run("counter.lox", null, "");
+
+        // then
+        Assertions.assertEquals("1\n", first.out);
+        Assertions.assertEquals("1\n", second.out);
+    }
+
+    @Test
+    void should_refuse_to_replace_a_file_or_a_running_daemon() throws Exception {
+        // given
+        Path script = directory.resolve("script.lox");
+        Files.writeString(script, "print 1;");
+
+        // when
+        var notSocket = Assertions.assertThrows(IOException.class, () -> new LoxDaemon(Interpreter::new).serve(script));
+        var running = Assertions.assertThrows(IOException.class, () -> new LoxDaemon(Interpreter::new).serve(socket));
+
+        // then
+        Assertions.assertEquals("not a socket, refusing to replace it", notSocket.getMessage());
+        Assertions.assertEquals("print 1;", Files.readString(script));
+        Assertions.assertEquals("another daemon is listening on it", running.getMessage());
+        Assertions.assertEquals("1\n", run("script.lox", null, "").out);
+    }
+
+    private record Run(String out, String err, int status) {
+    }
+
+    private static Run run(String script, String argument, String input) throws IOException {
+        try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            // sent at once, since the daemon may be done and gone before an unread input arrives
+            var output = new DataOutputStream(new BufferedOutputStream(LoxDaemon.output(channel)));
+            output.writeUTF(directory.toString());
+            output.writeInt(argument == null ? 1 : 2);
+            output.writeUTF(script);
+            if (argument != null) {
+                output.writeUTF(argument);
+            }
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0) {
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            output.writeInt(0);
+            output.flush();
+
+            var in = new DataInputStream(LoxDaemon.input(channel));
+            var out = new ByteArrayOutputStream();
+            var err = new ByteArrayOutputStream();
+            while (true) {
+                int stream = in.readByte();
+                int length = in.readInt();
+                if (stream == LoxDaemon.EXIT) {
+                    return new Run(out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8), length);
+                }
+                (stream == LoxDaemon.STDOUT ? out : err).write(in.readNBytes(length));
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.craftinginterpreters.lox;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+
+public class LoxEventsTest {
+
+    @Test
+    void should_record_calls_phases_and_errors() throws IOException {
+        // given
+        var file = Files.createTempFile("lox", ".jfr");
+        List<RecordedEvent> events;
+
+        // when
+        try (var recording = new Recording()) {
+            recording.enable("lox.FunctionCall").withThreshold(Duration.ZERO);
+            recording.enable("lox.Phase");
+            recording.enable("lox.RuntimeError");
+            recording.start();
+            PreparedScript.prepare("""
+                    fun square(x) {
+                      return x * x;
+                    }
+                    square(3);
+                    square("three");
+                    """).execute(new Interpreter());
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+
+        // then
+        var calls = events.stream().filter(event -> event.getEventType().getName().equals("lox.FunctionCall")).toList();
+        Assertions.assertEquals(2, calls.size());
+        Assertions.assertEquals("square", calls.get(0).getString("function"));
+        Assertions.assertEquals(1, calls.get(0).getInt("line"));
+
+        var phases = events.stream().filter(event -> event.getEventType().getName().equals("lox.Phase"))
+                .map(event -> event.getString("phase")).toList();
+        Assertions.assertEquals(List.of("parse", "resolve"), phases);
+
+        var error = events.stream().filter(event -> event.getEventType().getName().equals("lox.RuntimeError"))
+                .findFirst().orElseThrow();
+        Assertions.assertEquals(2, error.getInt("line"));
+    }
+}
@@ -0,0 +1,144 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class LoxListTest {
+
+    @Test
+    void should_keep_numbers_unboxed_until_something_else_is_stored() {
+        // given
+        var list = new LoxList();
+        for (int i = 0; i < 100; i++) {
+            list.add((double) i);
+        }
+        Assertions.assertTrue(list.unboxed());
+
+        // when
+        list.set(50, "fifty");
+
+        // then
+        Assertions.assertFalse(list.unboxed());
+        Assertions.assertEquals(100, list.size());
+        Assertions.assertEquals(49.0, list.get(49));
+        Assertions.assertEquals("fifty", list.get(50));
+        Assertions.assertEquals(99.0, list.get(99));
+    }
+
+    @Test
+    void should_append_all_elements_of_a_list() {
+        // given
+        var list = new LoxList();
+        list.add(1.0);
+        list.add(2.0);
+        var words = new LoxList();
+        words.add("a");
+
+        // when
+        list.addAll(list);
+        list.addAll(words);
+
+        // then
+        Assertions.assertEquals("[1, 2, 1, 2, a]", list.toString());
+    }
+
+    @Test
+    void should_print_lists_and_maps_holding_each_other() throws Exception {
+        // given
+        var first = new LoxList();
+        var second = new LoxList();
+        first.add(second);
+        second.add(first);
+        var map = new LoxMap();
+        map.put("list", first);
+        first.add(map);
+
+        // when
+        var printers = new ArrayList<CompletableFuture<String>>();
+        for (int i = 0; i < 4; i++) {
+            LoxList list = i % 2 == 0 ? first : second;
+            printers.add(CompletableFuture.supplyAsync(() -> {
+                String text = "";
+                for (int j = 0; j < 1000; j++) {
+                    text = list.toString();
+                }
+                return text;
+            }));
+        }
+
+        // then
+        Assertions.assertEquals("[[[...]], {list: [...]}]", printers.get(0).get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals("[[[...], {list: [...]}]]", printers.get(1).get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals("{list: [[[...]], {...}]}", map.toString());
+    }
+
+    @Test
+    void should_sort_numbers_and_strings() {
+        // given
+        var numbers = new LoxList();
+        numbers.add(3.0);
+        numbers.add(-1.5);
+        numbers.add(2.0);
+        var words = new LoxList();
+        words.add("pear");
+        words.add("apple");
+
+        // when
+        numbers.sort();
+        words.sort();
+
+        // then
+        Assertions.assertEquals("[-1.5, 2, 3]", numbers.toString());
+        Assertions.assertEquals("[apple, pear]", words.toString());
+    }
+
+    @Test
+    void should_use_list_from_script() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                fun descending(a, b) {
+                  return b - a;
+                }
+
+                var list = List();
+                for (var i = 0; i < 20; i = i + 1) {
+                  list.add(i);
+                }
+                list.sortWith(descending);
+                var first = list.get(0);
+                var last = list.pop();
+                var length = list.length();
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertEquals(19.0, interpreter.globals.get(name("first")));
+        Assertions.assertEquals(0.0, interpreter.globals.get(name("last")));
+        Assertions.assertEquals(19.0, interpreter.globals.get(name("length")));
+    }
+
+    @Test
+    void should_report_index_out_of_range_at_the_call() {
+        // given
+        var prepared = PreparedScript.prepare("var list = List();\nlist.get(0);");
+
+        // when
+        var interpreter = new Interpreter();
+        prepared.execute(interpreter);
+
+        // then
+        // reporting the error needs a line, which natives don't have of their own
+        Assertions.assertEquals(1, interpreter.stats.getRuntimeErrors());
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 1);
+    }
+}
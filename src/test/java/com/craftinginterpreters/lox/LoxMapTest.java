@@ -0,0 +1,86 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LoxMapTest {
+
+    @Test
+    void should_behave_like_hash_map_under_random_changes() {
+        // given
+        var map = new LoxMap();
+        var expected = new HashMap<Object, Object>();
+        var random = new Random(42);
+
+        // when
+        for (int i = 0; i < 100_000; i++) {
+            // a small key space, so that puts, overwrites and removes all hit the same probe runs
+            Object key = random.nextBoolean() ? (Object) (double) random.nextInt(500) : "k" + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                Assertions.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+
+        // then
+        Assertions.assertEquals(expected.size(), map.size());
+        for (var entry : expected.entrySet()) {
+            Assertions.assertEquals(entry.getValue(), map.lookup(entry.getKey()));
+        }
+        Assertions.assertEquals(expected.size(), map.keys().size());
+    }
+
+    @Test
+    void should_compare_keys_like_lox_equality() {
+        // given
+        var map = new LoxMap();
+
+        // when
+        map.put(1.0, "number");
+        map.put("1", "string");
+        map.put(true, "boolean");
+
+        // then
+        Assertions.assertEquals("number", map.lookup(1.0));
+        Assertions.assertEquals("string", map.lookup("1"));
+        Assertions.assertEquals("boolean", map.lookup(true));
+        Assertions.assertNull(map.lookup(null));
+        Assertions.assertFalse(map.has(false));
+    }
+
+    @Test
+    void should_count_words_from_script() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                var counts = Map();
+                fun count(word) {
+                  var n = counts.get(word);
+                  if (n == nil) n = 0;
+                  counts.put(word, n + 1);
+                }
+                count("the");
+                count("lox");
+                count("the");
+                counts.remove("lox");
+                var the = counts.get("the");
+                var size = counts.size();
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertEquals(2.0, interpreter.globals.get(name("the")));
+        Assertions.assertEquals(1.0, interpreter.globals.get(name("size")));
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 1);
+    }
+}
@@ -0,0 +1,88 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class LoxParallelTest {
+
+    @Test
+    void should_map_in_order() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                fun square(n) {
+                  return n * n;
+                }
+
+                var numbers = List();
+                for (var i = 0; i < 1000; i = i + 1) numbers.add(i);
+                var squares = parallel_map(numbers, square);
+                var inOrder = true;
+                for (var i = 0; i < squares.length(); i = i + 1) {
+                  if (squares.get(i) != i * i) inOrder = false;
+                }
+                var length = squares.length();
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertEquals(1000.0, interpreter.globals.get(name("length")));
+        Assertions.assertEquals(true, interpreter.globals.get(name("inOrder")));
+    }
+
+    @Test
+    void should_call_function_for_every_index_of_range() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                var seen = Map();
+                fun visit(i) {
+                  seen.put(i, true);
+                }
+                parallel_for(-5, 500, visit);
+                var count = seen.size();
+                var first = seen.has(-5);
+                var last = seen.has(499);
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertEquals(505.0, interpreter.globals.get(name("count")));
+        Assertions.assertEquals(true, interpreter.globals.get(name("first")));
+        Assertions.assertEquals(true, interpreter.globals.get(name("last")));
+    }
+
+    @Test
+    void should_report_lowest_failing_index() {
+        // given
+        var list = new LoxList();
+        for (int i = 0; i < 100; i++) {
+            list.add((double) i);
+        }
+        var prepared = PreparedScript.prepare("""
+                fun check(n) {
+                  if (n >= 42) return n + nil;
+                  return n;
+                }
+                """);
+        var interpreter = prepared.execute(Map.of());
+        var check = (LoxCallable) interpreter.globals.get(name("check"));
+
+        // when
+        var error = Assertions.assertThrows(RuntimeError.class,
+                () -> LoxParallel.map(interpreter, ForkJoinPool.commonPool(), list, check));
+
+        // then
+        Assertions.assertTrue(error.getMessage().startsWith("At index 42: "), error.getMessage());
+        Assertions.assertEquals(2, error.token.line);
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 1);
+    }
+}
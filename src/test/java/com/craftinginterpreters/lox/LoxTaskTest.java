@@ -0,0 +1,122 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class LoxTaskTest {
+
+    @Test
+    void should_return_results_of_spawned_functions() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                fun fib(n) {
+                  if (n < 2) return n;
+                  return fib(n - 1) + fib(n - 2);
+                }
+
+                fun job(n) {
+                  fun run() {
+                    return fib(n);
+                  }
+                  return run;
+                }
+
+                var tasks = List();
+                for (var i = 10; i < 20; i = i + 1) {
+                  tasks.add(spawn(job(i)));
+                }
+                var total = 0;
+                for (var i = 0; i < tasks.length(); i = i + 1) {
+                  total = total + await(tasks.get(i));
+                }
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertEquals(10857.0, interpreter.globals.get(name("total")));
+    }
+
+    @Test
+    void should_share_instances_and_lists_between_tasks() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                class Box {}
+                var box = Box();
+                var items = List();
+
+                fun fill() {
+                  for (var i = 0; i < 10000; i = i + 1) {
+                    items.add(i);
+                    box.last = i;
+                  }
+                }
+
+                var first = spawn(fill);
+                var second = spawn(fill);
+                await(first);
+                await(second);
+                var count = items.length();
+                var last = box.last;
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertEquals(20000.0, interpreter.globals.get(name("count")));
+        Assertions.assertEquals(9999.0, interpreter.globals.get(name("last")));
+    }
+
+    @Test
+    void should_raise_error_of_task_when_awaited() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                fun fail() {
+                  return nil + 1;
+                }
+                var task = spawn(fail);
+                var before = "spawned";
+                await(task);
+                """);
+
+        // when
+        var interpreter = new FlatInterpreter();
+        prepared.execute(interpreter);
+
+        // then
+        Assertions.assertEquals("spawned", interpreter.globals.get(name("before")));
+        Assertions.assertEquals(1, interpreter.stats.getRuntimeErrors());
+    }
+
+    @Test
+    void should_stop_tasks_nobody_awaited_when_script_ends() throws InterruptedException {
+        // given
+        var prepared = PreparedScript.prepare("""
+                var ticks = 0;
+                fun forever() {
+                  while (true) ticks = ticks + 1;
+                }
+                spawn(forever);
+                """);
+        var interpreter = new Interpreter();
+
+        // when
+        prepared.execute(interpreter);
+        Thread.sleep(100);
+        Object stopped = interpreter.globals.get(name("ticks"));
+        Thread.sleep(100);
+
+        // then
+        Assertions.assertEquals(stopped, interpreter.globals.get(name("ticks")));
+        Assertions.assertTrue(interpreter.stats.spawned);
+        Assertions.assertFalse(new Interpreter().stats.spawned);
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 1);
+    }
+}
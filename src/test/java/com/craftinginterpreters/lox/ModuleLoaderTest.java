@@ -0,0 +1,34 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ModuleLoaderTest {
+
+    @Test
+    void should_report_import_cycle_back_to_script() throws Exception {
+        // given
+        Path scripts = Files.createTempDirectory("lox-modules");
+        Files.writeString(scripts.resolve("main.lox"), "import \"helper.lox\";\nprint \"main\";\n");
+        Files.writeString(scripts.resolve("helper.lox"), "import \"main.lox\";\nprint \"helper\";\n");
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+        var interpreter = new Interpreter();
+        interpreter.out = new PrintStream(out, true, StandardCharsets.UTF_8);
+
+        // when
+        int status = Lox.runIsolated(interpreter, scripts.resolve("main.lox"),
+                new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        // then
+        Assertions.assertEquals(65, status);
+        Assertions.assertEquals("", out.toString(StandardCharsets.UTF_8));
+        Assertions.assertTrue(err.toString(StandardCharsets.UTF_8).contains("Import cycle"));
+    }
+}
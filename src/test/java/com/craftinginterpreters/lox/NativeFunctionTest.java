@@ -0,0 +1,43 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class NativeFunctionTest {
+
+    @Test
+    void should_return_numbers_that_scripts_can_subtract() {
+        // given
+        var prepared = PreparedScript.prepare("""
+                var start = clock_ns();
+                var allocated = alloc_bytes();
+                var text = "";
+                for (var i = 0; i < 1000; i = i + 1) {
+                  text = text + "x";
+                }
+                var elapsed = clock_ns() - start;
+                var bytes = alloc_bytes() - allocated;
+                var millis = clock() - clock();
+                var collections = gc_count();
+                var pauses = gc_time();
+                var heap = heap_used();
+                """);
+
+        // when
+        var interpreter = prepared.execute(Map.of());
+
+        // then
+        Assertions.assertTrue((double) interpreter.globals.get(name("elapsed")) > 0);
+        Assertions.assertTrue((double) interpreter.globals.get(name("bytes")) > 1000);
+        Assertions.assertTrue((double) interpreter.globals.get(name("millis")) <= 0);
+        Assertions.assertTrue((double) interpreter.globals.get(name("collections")) >= 0);
+        Assertions.assertTrue((double) interpreter.globals.get(name("pauses")) >= 0);
+        Assertions.assertTrue((double) interpreter.globals.get(name("heap")) > 0);
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 1);
+    }
+}
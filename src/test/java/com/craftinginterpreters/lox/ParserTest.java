@@ -132,6 +132,61 @@ public class ParserTest {
         Assertions.assertEquals(3, exp.count());
     }
 
+    @Test
+    void should_parse_token_buffer() {
+        // given
+        var parser = new Parser(new Scanner("1 + 2 * 3").scanTokenBuffer());
+
+        // when
+        var exp = new ExprHelper(parser.expression());
+
+        // then
+        Assertions.assertTrue(exp.isBinary());
+        Assertions.assertEquals(TokenType.PLUS, exp.operatorType());
+        Assertions.assertEquals(1.0, exp.left().value());
+        Assertions.assertEquals(TokenType.STAR, exp.right().operatorType());
+        Assertions.assertEquals(3.0, exp.right().right().value());
+    }
+
+    @Test
+    void should_bind_operators_by_precedence() {
+        // given
+        var parser = new Parser(new Scanner("a = b = !c or d and -e.f(1) < 2 - 3 / 4").scanTokenBuffer());
+
+        // when
+        var exp = parser.expression();
+
+        // then
+        var outer = (Expr.Assign) exp;
+        Assertions.assertEquals("a", outer.name.lexeme);
+        var inner = (Expr.Assign) outer.value;
+        Assertions.assertEquals("b", inner.name.lexeme);
+        var or = (Expr.Logical) inner.value;
+        Assertions.assertInstanceOf(Expr.Unary.class, or.left);
+        var and = (Expr.Logical) or.right;
+        Assertions.assertEquals(TokenType.AND, and.operator.type);
+        var less = new ExprHelper(and.right);
+        Assertions.assertEquals(TokenType.LESS, less.operatorType());
+        var negated = (Expr.Unary) ((Expr.Binary) and.right).left;
+        Assertions.assertInstanceOf(Expr.Call.class, negated.right);
+        Assertions.assertEquals(TokenType.MINUS, less.right().operatorType());
+        Assertions.assertEquals(TokenType.SLASH, less.right().right().operatorType());
+    }
+
+    @Test
+    void should_associate_binary_operators_to_the_left() {
+        // given
+        var parser = new Parser(new Scanner("1 - 2 - 3").scanTokenBuffer());
+
+        // when
+        var exp = new ExprHelper(parser.expression());
+
+        // then
+        Assertions.assertEquals(TokenType.MINUS, exp.operatorType());
+        Assertions.assertEquals(TokenType.MINUS, exp.left().operatorType());
+        Assertions.assertEquals(3.0, exp.right().value());
+    }
+
     private List<Token> tokens(Token ...tokens) {
         var result = new ArrayList<Token>();
         Collections.addAll(result, tokens);
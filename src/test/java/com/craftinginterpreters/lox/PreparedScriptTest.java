@@ -0,0 +1,84 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class PreparedScriptTest {
+
+    private static final String SCRIPT = """
+            fun square(x) {
+              var result = x * x;
+              return result;
+            }
+            var output = square(input);
+            """;
+
+    @Test
+    void should_run_prepared_script_with_different_globals() {
+        // given
+        var prepared = PreparedScript.prepare(SCRIPT);
+        Assertions.assertNotNull(prepared);
+
+        // when
+        var first = prepared.execute(Map.of("input", 3.0));
+        var second = prepared.execute(Map.of("input", 4.0));
+
+        // then
+        Assertions.assertEquals(9.0, first.globals.get(name("output")));
+        Assertions.assertEquals(16.0, second.globals.get(name("output")));
+    }
+
+    @Test
+    void should_run_prepared_script_repeatedly_in_one_interpreter() {
+        // given
+        var prepared = PreparedScript.prepare(SCRIPT);
+        var interpreter = new Interpreter();
+
+        // when
+        interpreter.globals.define("input", 2.0);
+        prepared.execute(interpreter);
+        interpreter.globals.assign(name("input"), 5.0);
+        prepared.execute(interpreter);
+
+        // then
+        Assertions.assertEquals(25.0, interpreter.globals.get(name("output")));
+    }
+
+    @Test
+    void should_call_function_of_earlier_script_from_later_one() {
+        // given
+        var counter = PreparedScript.prepare("""
+                fun counter() {
+                  var count = 0;
+                  fun next() { count = count + 1; return count; }
+                  return next;
+                }
+                var next = counter();
+                """);
+        var calls = PreparedScript.prepare("""
+                next();
+                { var local = next(); output = local; }
+                """);
+        var interpreter = new Interpreter();
+        interpreter.globals.define("output", null);
+
+        // when
+        counter.execute(interpreter);
+        calls.execute(interpreter);
+
+        // then
+        Assertions.assertEquals(2.0, interpreter.globals.get(name("output")));
+    }
+
+    @Test
+    void should_not_prepare_invalid_script() {
+        Assertions.assertNull(PreparedScript.prepare("var a = ;"));
+        Assertions.assertTrue(Lox.hadError);
+    }
+
+    private static Token name(String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, 0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ProfilerTest {
+
+    private static final String SCRIPT = """
+            fun fib(n) {
+              if (n < 2) return n;
+              return fib(n - 1) + fib(n - 2);
+            }
+            class Point {
+              init(x) {
+                this.x = x;
+              }
+            }
+            var result = fib(10) + Point(1).x;
+            """;
+
+    @Test
+    void should_count_calls_per_function() {
+        // given
+        var interpreter = new Interpreter();
+        interpreter.profiler = new Profiler();
+
+        // when
+        PreparedScript.prepare(SCRIPT).execute(interpreter);
+
+        // then
+        var content = new ByteArrayOutputStream();
+        interpreter.profiler.report(new PrintStream(content, true, StandardCharsets.UTF_8));
+        var report = content.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(report.matches("(?s).*\\s177\\s.*fib:1\\n.*"), report);
+        Assertions.assertTrue(report.matches("(?s).*\\s1\\s.*Point:5\\n.*"), report);
+        Assertions.assertTrue(report.matches("(?s).*\\s1\\s.*init:6\\n.*"), report);
+    }
+
+    @Test
+    void should_count_native_method_calls_in_one_row() {
+        // given
+        var interpreter = new Interpreter();
+        interpreter.profiler = new Profiler();
+
+        // when
+        PreparedScript.prepare("""
+                var list = List();
+                for (var i = 0; i < 50; i = i + 1) list.add(i);
+                """).execute(interpreter);
+
+        // then
+        var content = new ByteArrayOutputStream();
+        interpreter.profiler.report(new PrintStream(content, true, StandardCharsets.UTF_8));
+        var report = content.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(report.matches("(?s).*\\s50\\s[^\\n]*List\\.add \\(native\\)\\n.*"), report);
+    }
+
+    @Test
+    void should_write_collapsed_stacks() throws IOException {
+        // given
+        var interpreter = new FlatInterpreter();
+        interpreter.profiler = new Profiler();
+        PreparedScript.prepare(SCRIPT).execute(interpreter);
+        var file = Files.createTempFile("profile", ".collapsed");
+
+        // when
+        interpreter.profiler.writeCollapsedStacks(file);
+
+        // then
+        var lines = Files.readAllLines(file);
+        Files.delete(file);
+        Assertions.assertTrue(lines.stream().allMatch(line -> line.matches("<script>(;[^;]+)* \\d+")), lines.toString());
+        Assertions.assertTrue(lines.stream().anyMatch(line -> line.startsWith("<script>;fib:1;fib:1")), lines.toString());
+    }
+}
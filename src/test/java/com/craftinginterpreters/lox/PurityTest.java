@@ -0,0 +1,132 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class PurityTest {
+
+    private static final String SCRIPT = """
+            fun fib(n) {
+              if (n < 2) return n;
+              return fib(n - 1) + fib(n - 2);
+            }
+
+            fun sum(n) {
+              var total = 0;
+              for (var i = 1; i <= n; i = i + 1) {
+                total = total + i;
+              }
+              return total;
+            }
+
+            fun both(n) {
+              return fib(n) + sum(n);
+            }
+
+            var calls = 0;
+            fun counted(n) {
+              calls = calls + 1;
+              return n;
+            }
+
+            fun callsCounted(n) {
+              return counted(n);
+            }
+
+            fun prints(n) {
+              print n;
+            }
+
+            fun reassigned(n) {
+              return n;
+            }
+            reassigned = nil;
+
+            fun readsGlobal(n) {
+              return n + calls;
+            }
+
+            fun makesClosure(n) {
+              fun inner() {
+                return n;
+              }
+              return inner;
+            }
+            """;
+
+    @Test
+    void should_find_pure_functions() {
+        // given
+        var statements = PreparedScript.prepare(SCRIPT).statements;
+
+        // when
+        Set<Stmt.Function> pure = Purity.analyze(statements);
+
+        // then
+        Set<String> names = new TreeSet<>();
+        for (Stmt.Function function : pure) {
+            names.add(function.name.lexeme);
+        }
+        Assertions.assertEquals(Set.of("both", "fib", "sum"), names);
+    }
+
+    @Test
+    void should_not_memoize_scripts_with_imports() {
+        // given
+        var statements = Lox.parse("import \"other.lox\";\nfun id(n) { return n; }");
+
+        // when
+        Set<Stmt.Function> pure = Purity.analyze(statements);
+
+        // then
+        Assertions.assertTrue(pure.isEmpty());
+    }
+
+    @Test
+    void should_answer_repeated_calls_from_cache() {
+        // given
+        var interpreter = new Interpreter();
+        interpreter.memoized = new HashSet<>();
+
+        // when
+        PreparedScript.prepare(SCRIPT + "var result = fib(40);").execute(interpreter);
+
+        // then
+        Assertions.assertEquals(102334155.0, interpreter.globals.get(new Token(TokenType.IDENTIFIER, "result", null, 1)));
+        Assertions.assertEquals(41, interpreter.stats.getMemoMisses());
+        Assertions.assertEquals(38, interpreter.stats.getMemoHits());
+    }
+
+    @Test
+    void should_drop_cached_results_when_a_called_function_is_redefined() throws Exception {
+        // given
+        Path directory = Files.createTempDirectory("lox-purity");
+        Files.writeString(directory.resolve("module.lox"), """
+                fun offset() {
+                  return 1;
+                }
+                fun shifted(n) {
+                  return n + offset();
+                }
+                """);
+        var interpreter = new Interpreter();
+        interpreter.memoized = new HashSet<>();
+        var first = PreparedScript.prepare("import \"module.lox\";\nvar before = shifted(1);");
+        var second = PreparedScript.prepare("fun offset() {\n  return 10;\n}\nvar after = shifted(1);");
+
+        // when
+        Assertions.assertTrue(interpreter.modules.preload(first, directory));
+        first.execute(interpreter);
+        second.execute(interpreter);
+
+        // then
+        Assertions.assertEquals(2.0, interpreter.globals.get(new Token(TokenType.IDENTIFIER, "before", null, 1)));
+        Assertions.assertEquals(11.0, interpreter.globals.get(new Token(TokenType.IDENTIFIER, "after", null, 1)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ResolverTest {
+
+    @Test
+    void should_resolve_to_innermost_declaration() {
+        // given
+        var statements = Lox.parse("""
+                {
+                  var a = 1;
+                  {
+                    var b = a;
+                    {
+                      var a = b;
+                      print a;
+                    }
+                    print a;
+                  }
+                }
+                """);
+        Map<Expr, Integer> locals = new HashMap<>();
+
+        // when
+        new Resolver(locals).resolve(statements);
+
+        // then
+        var outer = (Stmt.Block) ((Stmt.Block) statements.get(0)).statements.get(1);
+        var inner = (Stmt.Block) outer.statements.get(1);
+        Assertions.assertEquals(1, (int) locals.get(((Stmt.Var) outer.statements.get(0)).initializer));
+        Assertions.assertEquals(0, (int) locals.get(((Stmt.Print) inner.statements.get(1)).expression));
+        Assertions.assertEquals(1, (int) locals.get(((Stmt.Print) outer.statements.get(2)).expression));
+    }
+
+    @Test
+    void should_leave_globals_unresolved() {
+        // given
+        var statements = Lox.parse("var a = 1; { var b = 2; } print a;");
+        Map<Expr, Integer> locals = new HashMap<>();
+
+        // when
+        new Resolver(locals).resolve(statements);
+
+        // then
+        Assertions.assertTrue(locals.isEmpty());
+    }
+
+    @Test
+    void should_resolve_deeply_nested_scopes() {
+        // given
+        int depth = 500;
+        var script = new StringBuilder("{ var v0 = 0;\n");
+        for (int i = 1; i < depth; i++) {
+            script.append("{ var v").append(i).append(" = v").append(i - 1).append(" + v0;\n");
+        }
+        script.append("}\n".repeat(depth));
+        int errors = Lox.errorCount();
+        List<Stmt> statements = Lox.parse(script);
+        Map<Expr, Integer> locals = new HashMap<>();
+
+        // when
+        new Resolver(locals).resolve(statements);
+
+        // then
+        Assertions.assertEquals(errors, Lox.errorCount());
+        Assertions.assertEquals(2 * (depth - 1), locals.size());
+        Assertions.assertEquals(depth - 1, locals.values().stream().mapToInt(Integer::intValue).max().orElseThrow());
+    }
+}
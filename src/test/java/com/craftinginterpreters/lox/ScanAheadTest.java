@@ -0,0 +1,52 @@
+package com.craftinginterpreters.lox;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ScanAheadTest {
+
+    private static final String SOURCE = """
+            /* a banner comment that is longer than any vector register,
+             * spread over several lines ** with / stray * characters
+             */
+            var text = "a string literal that is long enough to span a few vectors
+            and even a line break";                                          // trailing comment
+            \t\t    print text;
+            """;
+
+    @Test
+    void should_find_same_positions_as_scalar_scan() throws IOException {
+        Path file = Files.createTempFile("scan", ".lox");
+        Files.writeString(file, SOURCE);
+        // decoded rather than read from the mapping
+        Path unicode = Files.createTempFile("scan", ".lox");
+        Files.writeString(unicode, "// \u00e9t\u00e9\n" + SOURCE);
+
+        for (CharSequence source : List.of(SOURCE, MappedSource.open(file), MappedSource.open(unicode))) {
+            var scalar = new ScanAhead(source);
+            var selected = ScanAhead.of(source);
+            for (int from = 0; from <= source.length(); from++) {
+                Assertions.assertEquals(scalar.indexOf('"', from), selected.indexOf('"', from));
+                Assertions.assertEquals(scalar.indexOf('\n', from), selected.indexOf('\n', from));
+                Assertions.assertEquals(scalar.indexOfAny('*', '/', from), selected.indexOfAny('*', '/', from));
+                Assertions.assertEquals(scalar.skipBlanks(from), selected.skipBlanks(from));
+                Assertions.assertEquals(scalar.count('\n', 0, from), selected.count('\n', 0, from));
+            }
+        }
+        Files.delete(file);
+        Files.delete(unicode);
+    }
+
+    @Test
+    void should_count_lines_in_comments_and_strings() {
+        var tokens = new Scanner(SOURCE).scanTokens();
+
+        var print = tokens.stream().filter(token -> token.type == TokenType.PRINT).findFirst().orElseThrow();
+        Assertions.assertEquals(6, print.line);
+    }
+}
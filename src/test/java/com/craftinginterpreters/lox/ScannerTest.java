@@ -1,7 +1,11 @@
 package com.craftinginterpreters.lox;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.craftinginterpreters.lox.TokenType.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -94,4 +98,64 @@ class ScannerTest {
         assertEquals(1, tokens.size());
         assertEquals(EOF, tokens.get(0).type);
     }
-} 
\ No newline at end of file
+
+    @Test
+    void should_pull_tokens_one_at_a_time() {
+        String source = "var x = \"a\nb\";\nx";
+        Scanner scanner = new Scanner(source);
+
+        assertEquals(VAR, scanner.nextToken().type);
+        assertEquals(IDENTIFIER, scanner.nextToken().type);
+        assertEquals(EQUAL, scanner.nextToken().type);
+        assertEquals("a\nb", scanner.nextToken().literal);
+        assertEquals(SEMICOLON, scanner.nextToken().type);
+
+        Token last = scanner.nextToken();
+        assertEquals("x", last.lexeme);
+        assertEquals(3, last.line);
+        assertEquals(EOF, scanner.nextToken().type);
+        assertEquals(EOF, scanner.nextToken().type);
+    }
+
+    @Test
+    void should_scan_memory_mapped_source() throws IOException {
+        Path file = Files.createTempFile("scanner", ".lox");
+        Files.writeString(file, "print \"caf\u00e9\"; // comment\nprint 1.5;");
+
+        List<Token> tokens = new Scanner(MappedSource.open(file)).scanTokens();
+
+        assertIterableEquals(List.of(PRINT, STRING, SEMICOLON, PRINT, NUMBER, SEMICOLON, EOF),
+                tokens.stream().map(t -> t.type).collect(Collectors.toList()));
+        assertEquals("caf\u00e9", tokens.get(1).literal);
+        assertEquals(1.5, tokens.get(4).literal);
+        Files.delete(file);
+    }
+
+    @Test
+    void should_not_mistake_keyword_prefixes_for_keywords() {
+        String source = "f fo forx i imports t th nil_ classy";
+        Scanner scanner = new Scanner(source);
+
+        List<Token> tokens = scanner.scanTokens();
+
+        assertEquals(10, tokens.size());
+        tokens.subList(0, 9).forEach(token -> assertEquals(IDENTIFIER, token.type, token.lexeme));
+    }
+
+    @Test
+    void should_fill_token_buffer() {
+        String source = "var answer = 42;\nprint \"x\" + 0.5;";
+        Scanner scanner = new Scanner(source);
+
+        TokenBuffer buffer = scanner.scanTokenBuffer();
+
+        assertEquals(11, buffer.size());
+        assertIterableEquals(List.of(VAR, IDENTIFIER, EQUAL, NUMBER, SEMICOLON, PRINT, STRING, PLUS, NUMBER, SEMICOLON),
+                IntStream.range(0, 10).mapToObj(buffer::type).collect(Collectors.toList()));
+        assertEquals("answer", buffer.token(1).lexeme);
+        assertEquals(42.0, buffer.token(3).literal);
+        assertEquals(2, buffer.line(6));
+        assertEquals("x", buffer.token(6).literal);
+        assertEquals(0.5, buffer.token(8).literal);
+    }
+}
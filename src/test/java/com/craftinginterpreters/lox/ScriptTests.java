@@ -1,6 +1,7 @@
 package com.craftinginterpreters.lox;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -23,11 +24,25 @@ public class ScriptTests {
         var script = readFile(scriptFile);
         var expectedOutput = readFile(outputFile);
         // when
-        var actualOutput = runScript(script);
+        var actualOutput = runScript(script, scriptFile.getParent());
         // then
         Assertions.assertEquals(expectedOutput, actualOutput);
     }
 
+    @Test
+    void should_print_to_output_redirected_for_each_script() {
+        // given
+        var directory = Paths.get("expectation_tests");
+
+        // when
+        var first = runScript("print \"first\";", directory);
+        var second = runScript("print \"second\";", directory);
+
+        // then
+        Assertions.assertEquals("first\n", first);
+        Assertions.assertEquals("second\n", second);
+    }
+
     static Stream<Arguments> scriptProvider() throws IOException {
         return Files.list(Paths.get("expectation_tests"))
                 .filter(file -> file.toString().endsWith(".lox"))
@@ -39,11 +54,11 @@ public class ScriptTests {
         return Files.readString(filename, StandardCharsets.UTF_8);
     }
 
-    String runScript(String script) {
+    String runScript(String script, Path directory) {
         var originalOut = System.out;
         try (var content = new ByteArrayOutputStream(10 * 1024); var out = new PrintStream(content)) {
             System.setOut(out);
-            Lox.runScript(script);
+            Lox.runScript(script, directory);
             if (Lox.hadError || Lox.hadRuntimeError) {
                 Assertions.fail("The script failed with an error");
             }